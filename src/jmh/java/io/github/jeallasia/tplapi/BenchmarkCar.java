@@ -0,0 +1,24 @@
+package io.github.jeallasia.tplapi;
+
+import java.util.function.Predicate;
+
+/**
+ * Car used by the benchmarks
+ */
+public class BenchmarkCar {
+
+    public enum Type {GAS, E20KW}
+
+    static final Predicate<BenchmarkCar> isGAS = car -> car.type == Type.GAS;
+    static final Predicate<BenchmarkCar> isE20 = car -> car.type == Type.E20KW;
+    static final Predicate<BenchmarkCar> isChargeNotRequired = car -> car.chargeNotRequired;
+
+    final Type type;
+    final boolean chargeNotRequired;
+
+    BenchmarkCar(Type type, boolean chargeNotRequired) {
+        this.type = type;
+        this.chargeNotRequired = chargeNotRequired;
+    }
+
+}
@@ -0,0 +1,57 @@
+package io.github.jeallasia.tplapi;
+
+import org.javamoney.moneta.Money;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of check in / check out shared by several threads, each checking in and out its own car.
+ * Run it with an increasing number of threads ({@code -t 1}, {@code -t 2}, ...) to see how it scales.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ConcurrentParkingBenchmark {
+
+    private static final LocalDateTime IN = LocalDateTime.of(2019, 6, 4, 6, 5);
+    private static final LocalDateTime OUT = IN.plusMinutes(50);
+
+    @Param({"false", "true"})
+    public boolean concurrent;
+
+    private Parking<BenchmarkCar> parking;
+
+    /**
+     * The car of each thread
+     */
+    @State(Scope.Thread)
+    public static class Gate {
+        final BenchmarkCar car = new BenchmarkCar(BenchmarkCar.Type.GAS, false);
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        parking = Parking.<BenchmarkCar>builder()
+                .setPricingPolicy(PricingPolicy.PER_STARTED_HOUR_AND_FIXED(Money.of(5, "EUR"), Money.of(1, "EUR")))
+                .addSlots(BenchmarkCar.isGAS, 1_000)
+                .addSlots(BenchmarkCar.isE20, 1_000)
+                .setConcurrent(concurrent)
+                .build();
+    }
+
+    @Benchmark
+    public Object checkInCheckOut(Gate gate) {
+        parking.checkIn(gate.car, IN);
+        return parking.checkOut(gate.car, OUT);
+    }
+}
@@ -0,0 +1,121 @@
+package io.github.jeallasia.tplapi;
+
+import org.javamoney.moneta.Money;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the {@link Parking} hot paths.
+ * The parking is made of E20KW slots followed by GAS slots accepting alternatively cars that don't have to be
+ * charged. It is filled according to the occupancy, but the path has the last word on the state of each half:
+ * <ul>
+ * <li>PREFERRED: an E20KW car gets an E20KW slot</li>
+ * <li>ALTERNATIVE: all E20KW slots are taken, an E20KW car not requiring charge gets a GAS slot</li>
+ * <li>NO_SLOT: all E20KW slots are taken, an E20KW car requiring charge can't check in</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ParkingBenchmark {
+
+    public enum Path {PREFERRED, ALTERNATIVE, NO_SLOT}
+
+    private static final LocalDateTime IN = LocalDateTime.of(2019, 6, 4, 6, 5);
+    private static final LocalDateTime OUT = IN.plusMinutes(50);
+
+    @Param({"100", "10000", "1000000"})
+    public int size;
+
+    @Param({"0", "50", "90", "100"})
+    public int occupancy;
+
+    @Param({"PREFERRED", "ALTERNATIVE", "NO_SLOT"})
+    public Path path;
+
+    /**
+     * {@code true} to record the metrics (See {@link ParkingBuilder#setMetrics(boolean)})
+     */
+    @Param({"false", "true"})
+    public boolean metrics;
+
+    private Parking<BenchmarkCar> parking;
+    private BenchmarkCar car;
+    private final SlotHandle<BenchmarkCar> handle = new SlotHandle<>();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        int half = size / 2;
+        parking = Parking.<BenchmarkCar>builder()
+                .setPricingPolicy(PricingPolicy.PER_STARTED_HOUR_AND_FIXED(Money.of(5, "EUR"), Money.of(1, "EUR")))
+                .addSlots(BenchmarkCar.isE20, half)
+                .addSlots(BenchmarkCar.isGAS, BenchmarkCar.isChargeNotRequired, size - half)
+                .setMetrics(metrics)
+                .build();
+        int occupied = (int) ((long) size * occupancy / 100);
+        int e20 = path == Path.PREFERRED ? Math.min(occupied, half - 1) : half;
+        int gas = Math.min(occupied - Math.min(occupied, e20), size - half - (path == Path.ALTERNATIVE ? 1 : 0));
+        fill(BenchmarkCar.Type.E20KW, e20);
+        fill(BenchmarkCar.Type.GAS, gas);
+        car = new BenchmarkCar(BenchmarkCar.Type.E20KW, path == Path.ALTERNATIVE);
+    }
+
+    private void fill(BenchmarkCar.Type type, int nbrCars) {
+        for (int i = 0; i < nbrCars; i++) {
+            parking.checkIn(new BenchmarkCar(type, false), IN);
+        }
+    }
+
+    /**
+     * Check in then check out the same car, leaving the parking unchanged.
+     *
+     * @return the check out result
+     */
+    @Benchmark
+    public Object checkInCheckOut() {
+        if (!parking.checkIn(car, IN).isSuccessful()) {
+            return null;
+        }
+        return parking.checkOut(car, OUT);
+    }
+
+    /**
+     * Same as {@link ParkingBenchmark#checkInCheckOut()} reusing a {@link SlotHandle}, run it with {@code -prof gc}
+     * to check the allocation rate (what remains is allocated by the pricing policy).
+     *
+     * @return the price
+     */
+    @Benchmark
+    public Object checkInCheckOutWithHandle() {
+        if (!parking.checkIn(car, IN, handle)) {
+            return null;
+        }
+        return parking.checkOut(car, OUT, handle);
+    }
+
+    @Benchmark
+    public long getAvailableSizeFor() {
+        return parking.getAvailableSizeFor(car);
+    }
+
+    @Benchmark
+    public long getAvailableSizeAltFor() {
+        return parking.getAvailableSizeAltFor(car);
+    }
+
+    @Benchmark
+    public long getAvailableSizeCompatibleFor() {
+        return parking.getAvailableSizeCompatibleFor(car);
+    }
+
+}
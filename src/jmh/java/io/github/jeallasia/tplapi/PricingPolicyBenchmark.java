@@ -0,0 +1,116 @@
+package io.github.jeallasia.tplapi;
+
+import org.javamoney.moneta.Money;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import javax.money.MonetaryAmount;
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the provided {@link PricingPolicy} implementations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PricingPolicyBenchmark {
+
+    public enum Policy {FIXED, PER_STARTED_HOUR, PER_FINISHED_HOUR, PER_STARTED_HOUR_AND_FIXED, AND_OF_FOUR, TABLE, WEEKLY}
+
+    @Param({"FIXED", "PER_STARTED_HOUR", "PER_FINISHED_HOUR", "PER_STARTED_HOUR_AND_FIXED", "AND_OF_FOUR", "TABLE",
+            "WEEKLY"})
+    public Policy policy;
+
+    @Param({"50", "10000"})
+    public int durationInMinutes;
+
+    /**
+     * {@code true} to benchmark the policy as compiled by {@link ParkingBuilder#build()}
+     */
+    @Param({"false", "true"})
+    public boolean compiled;
+
+    private PricingPolicy<BenchmarkCar> pricingPolicy;
+    private ParkingSlot<BenchmarkCar> slot;
+    /**
+     * Stays priced in bulk, all with the same duration
+     */
+    private final long[] incomingEpochNanos = new long[100_000];
+    private final long[] outgoingEpochNanos = new long[incomingEpochNanos.length];
+
+    @Setup
+    public void setUp() {
+        MonetaryAmount five = Money.of(5, "EUR");
+        MonetaryAmount one = Money.of(1, "EUR");
+        switch (policy) {
+            case FIXED:
+                pricingPolicy = PricingPolicy.FIXED(one);
+                break;
+            case PER_STARTED_HOUR:
+                pricingPolicy = PricingPolicy.PER_STARTED_HOUR(five);
+                break;
+            case PER_FINISHED_HOUR:
+                pricingPolicy = PricingPolicy.PER_FINISHED_HOUR(five);
+                break;
+            case PER_STARTED_HOUR_AND_FIXED:
+                pricingPolicy = PricingPolicy.PER_STARTED_HOUR_AND_FIXED(five, one);
+                break;
+            case AND_OF_FOUR:
+                pricingPolicy = PricingPolicy.AND(
+                        PricingPolicy.AND(PricingPolicy.PER_STARTED_HOUR(five), PricingPolicy.FIXED(one)),
+                        PricingPolicy.AND(PricingPolicy.PER_FINISHED_HOUR(one), PricingPolicy.FIXED(five)));
+                break;
+            case TABLE:
+                // 5 per started hour, 30 max per day
+                pricingPolicy = PricingPolicy.TABLE(Duration.ofMinutes(15), Duration.ofDays(1),
+                        duration -> five.multiply(Math.min(6, (duration.toMinutes() + 59) / 60)));
+                break;
+            case WEEKLY:
+                // 5 per hour, 1 per hour at night and on sunday
+                pricingPolicy = PricingPolicy.<BenchmarkCar>WEEKLY(five)
+                        .setRate(LocalTime.of(20, 0), LocalTime.of(8, 0), one)
+                        .setRate(DayOfWeek.SUNDAY, one)
+                        .build();
+                break;
+        }
+        if (compiled) {
+            pricingPolicy = CompiledPricing.compile(pricingPolicy);
+        }
+        LocalDateTime in = LocalDateTime.of(2019, 6, 4, 6, 5);
+        slot = new ParkingSlot<>("0", PredicateWithAlt.buildAlt(BenchmarkCar.isGAS),
+                new BenchmarkCar(BenchmarkCar.Type.GAS, false), in, false, in.plusMinutes(durationInMinutes));
+        for (int i = 0; i < incomingEpochNanos.length; i++) {
+            incomingEpochNanos[i] = Timestamps.toEpochNanos(in.plusMinutes(i));
+            outgoingEpochNanos[i] = Timestamps.toEpochNanos(in.plusMinutes(i + durationInMinutes));
+        }
+    }
+
+    @Benchmark
+    public MonetaryAmount computePrice() {
+        return pricingPolicy.computePrice(slot);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(100_000)
+    public long[] computePrices() {
+        return pricingPolicy.computePrices(incomingEpochNanos, outgoingEpochNanos, 2);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(100_000)
+    public long[] computePricesParallel() {
+        return pricingPolicy.computePricesParallel(incomingEpochNanos, outgoingEpochNanos, 2);
+    }
+
+}
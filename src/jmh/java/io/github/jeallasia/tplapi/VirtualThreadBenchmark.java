@@ -0,0 +1,101 @@
+package io.github.jeallasia.tplapi;
+
+import org.javamoney.moneta.Money;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 10k callers (one virtual thread each) checking in and out their own car, against a parking large enough for all of
+ * them. Each operation is the whole run of the 10k callers.
+ * Virtual threads are looked up by reflection so that the project still builds with the JDKs it targets: on a JVM
+ * without them (before Java 21) the benchmark fails instead of measuring platform threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class VirtualThreadBenchmark {
+
+    private static final int CALLERS = 10_000;
+    private static final LocalDateTime IN = LocalDateTime.of(2019, 6, 4, 6, 5);
+    private static final LocalDateTime OUT = IN.plusMinutes(50);
+
+    @Param({"false", "true"})
+    public boolean concurrent;
+
+    /**
+     * Number of zones the slots are split into (See {@link ParkingBuilder#setZone(String)})
+     */
+    @Param({"1", "4"})
+    public int zones;
+
+    /**
+     * Number of check ins and check outs of each caller
+     */
+    @Param({"10"})
+    public int stays;
+
+    private Parking<BenchmarkCar> parking;
+    private ExecutorService executor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ParkingBuilder<BenchmarkCar> builder = Parking.<BenchmarkCar>builder()
+                .setPricingPolicy(PricingPolicy.PER_STARTED_HOUR_AND_FIXED(Money.of(5, "EUR"), Money.of(1, "EUR")))
+                .setConcurrent(concurrent);
+        for (int zone = 0; zone < zones; zone++) {
+            builder.setZone("zone " + zone).addSlots(BenchmarkCar.isE20, CALLERS / zones);
+        }
+        parking = builder.build();
+        executor = newVirtualThreadPerTaskExecutor();
+    }
+
+    /**
+     * @return an executor starting a virtual thread per task
+     * @throws UnsupportedOperationException if the JVM doesn't support virtual threads
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("Virtual threads are not supported by this JVM (Java 21 or later"
+                    + " is needed), VirtualThreadBenchmark can't run !", e);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Benchmark
+    public int callers() throws Exception {
+        List<Future<?>> futures = new ArrayList<>(CALLERS);
+        for (int i = 0; i < CALLERS; i++) {
+            futures.add(executor.submit(() -> {
+                BenchmarkCar car = new BenchmarkCar(BenchmarkCar.Type.E20KW, false);
+                for (int j = 0; j < stays; j++) {
+                    parking.checkIn(car, IN);
+                    parking.checkOut(car, OUT);
+                }
+            }));
+        }
+        for (Future<?> future : futures) future.get();
+        return futures.size();
+    }
+}
@@ -0,0 +1,46 @@
+package io.github.jeallasia.tplapi;
+
+import javax.money.MonetaryAmount;
+import java.util.function.LongBinaryOperator;
+
+/**
+ * {@link PricingPolicy#AND(PricingPolicy, PricingPolicy)}, kept as a class so that it can be compiled
+ * (See {@link CompiledPricing})
+ *
+ * @param <T> the car class you want to use
+ */
+final class AndPricing<T> implements PricingPolicy<T>, UnitPricing {
+
+    private final PricingPolicy<T> policy1;
+    private final PricingPolicy<T> policy2;
+
+    AndPricing(PricingPolicy<T> policy1, PricingPolicy<T> policy2) {
+        this.policy1 = policy1;
+        this.policy2 = policy2;
+    }
+
+    PricingPolicy<T> getPolicy1() {
+        return policy1;
+    }
+
+    PricingPolicy<T> getPolicy2() {
+        return policy2;
+    }
+
+    /**
+     * Only valid if {@link UnitPricing#isUnitPricing(PricingPolicy)}
+     */
+    @Override
+    public LongBinaryOperator unitsAt(int scale) {
+        LongBinaryOperator units1 = ((UnitPricing) policy1).unitsAt(scale);
+        LongBinaryOperator units2 = ((UnitPricing) policy2).unitsAt(scale);
+        return (incomingEpochNanos, outgoingEpochNanos) -> Math.addExact(
+                units1.applyAsLong(incomingEpochNanos, outgoingEpochNanos),
+                units2.applyAsLong(incomingEpochNanos, outgoingEpochNanos));
+    }
+
+    @Override
+    public MonetaryAmount computePrice(ParkingSlot<T> slot) {
+        return policy1.computePrice(slot).add(policy2.computePrice(slot));
+    }
+}
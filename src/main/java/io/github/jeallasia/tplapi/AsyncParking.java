@@ -0,0 +1,235 @@
+package io.github.jeallasia.tplapi;
+
+import io.github.jeallasia.tplapi.exception.ParkingException;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous facade of a {@link Parking}, built using {@link ParkingBuilder#buildAsync()}.
+ * Callers never block: requests are queued (without lock) and executed in order by a single writer thread owning the
+ * parking, which drains them in batches (consecutive check ins or check outs at the same date time are executed
+ * taking the lock of the parking once, each of them succeeding or failing on its own).
+ * Futures are completed by the writer thread: use the async variants of {@link CompletableFuture} for long actions.
+ *
+ * @param <T> the car class you want to use
+ */
+public final class AsyncParking<T> implements AutoCloseable {
+
+    /**
+     * Maximum number of requests drained at once
+     */
+    static final int BATCH_SIZE = 256;
+
+    private final Parking<T> parking;
+    private final Queue<Request<T>> requests = new ConcurrentLinkedQueue<>();
+    private final Thread writer;
+    private volatile boolean sleeping = false;
+    private volatile boolean closed = false;
+
+    /**
+     * Created by the builder, starts the writer thread
+     */
+    AsyncParking(Parking<T> parking) {
+        this.parking = parking;
+        this.writer = new Thread(this::run, "tplapi-async");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * A check in or check out waiting for the writer thread
+     */
+    private static final class Request<T> {
+        private final boolean checkIn;
+        private final T car;
+        private final LocalDateTime dateTime;
+        private final CompletableFuture<Object> future = new CompletableFuture<>();
+
+        private Request(boolean checkIn, T car, LocalDateTime dateTime) {
+            this.checkIn = checkIn;
+            this.car = car;
+            this.dateTime = dateTime;
+        }
+
+        private boolean batchableWith(Request<T> other) {
+            return checkIn == other.checkIn && dateTime.equals(other.dateTime);
+        }
+    }
+
+    /**
+     * Return the parking, to run queries (like {@link Parking#getAvailableSizeFor(Object)}) without waiting for the
+     * queued requests. It is meant for queries only: a check in or check out made directly on it bypasses the writer
+     * thread, and is not ordered with the queued requests.
+     *
+     * @return the parking
+     */
+    public Parking<T> getParking() {
+        return parking;
+    }
+
+    /**
+     * Queue a check in (See {@link Parking#checkIn(Object, LocalDateTime)}).
+     *
+     * @param car              The car you want to check in.
+     * @param incomingDateTime The incoming date and time.
+     * @return the future {@link CheckInResult}, completed exceptionally with a {@link ParkingException} if the car is
+     * already in the parking
+     */
+    @SuppressWarnings("unchecked")
+    public CompletableFuture<CheckInResult<T>> checkIn(T car, LocalDateTime incomingDateTime) {
+        return (CompletableFuture<CheckInResult<T>>) (CompletableFuture<?>) submit(true, car, incomingDateTime);
+    }
+
+    /**
+     * Queue a check in now, according to the clock of the parking (See {@link ParkingBuilder#setClock(java.time.Clock)})
+     *
+     * @param car The car you want to check in.
+     * @return the future {@link CheckInResult}
+     */
+    public CompletableFuture<CheckInResult<T>> checkIn(T car) {
+        return checkIn(car, parking.now());
+    }
+
+    /**
+     * Queue a check out (See {@link Parking#checkOut(Object, LocalDateTime)}).
+     *
+     * @param car              The car you want to check out.
+     * @param outgoingDateTime The outgoing date and time.
+     * @return the future {@link CheckOutResult}, completed exceptionally with a {@link ParkingException} if the car is
+     * not in the parking
+     */
+    @SuppressWarnings("unchecked")
+    public CompletableFuture<CheckOutResult<T>> checkOut(T car, LocalDateTime outgoingDateTime) {
+        return (CompletableFuture<CheckOutResult<T>>) (CompletableFuture<?>) submit(false, car, outgoingDateTime);
+    }
+
+    /**
+     * Queue a check out now, according to the clock of the parking (See {@link ParkingBuilder#setClock(java.time.Clock)})
+     *
+     * @param car The car you want to check out.
+     * @return the future {@link CheckOutResult}
+     */
+    public CompletableFuture<CheckOutResult<T>> checkOut(T car) {
+        return checkOut(car, parking.now());
+    }
+
+    private CompletableFuture<Object> submit(boolean checkIn, T car, LocalDateTime dateTime) {
+        Request<T> request = new Request<>(checkIn, Objects.requireNonNull(car), Objects.requireNonNull(dateTime));
+        if (closed) {
+            request.future.completeExceptionally(new ParkingException("The parking is closed !"));
+            return request.future;
+        }
+        requests.add(request);
+        if (sleeping) {
+            LockSupport.unpark(writer);
+        }
+        if (closed && requests.remove(request)) {
+            // Closed concurrently, the writer may be gone
+            request.future.completeExceptionally(new ParkingException("The parking is closed !"));
+        }
+        return request.future;
+    }
+
+    /**
+     * The loop of the writer thread, until the parking is closed and all requests are executed.
+     */
+    private void run() {
+        List<Request<T>> batch = new ArrayList<>(BATCH_SIZE);
+        while (true) {
+            Request<T> request;
+            while (batch.size() < BATCH_SIZE && (request = requests.poll()) != null) {
+                batch.add(request);
+            }
+            if (!batch.isEmpty()) {
+                execute(batch);
+                batch.clear();
+                continue;
+            }
+            if (closed && requests.isEmpty()) {
+                return;
+            }
+            // Published before checking the queue again, a request added from now on wakes the writer up
+            sleeping = true;
+            if (requests.isEmpty() && !closed) {
+                LockSupport.park(this);
+            }
+            sleeping = false;
+        }
+    }
+
+    /**
+     * Execute the batch, in order, grouping the consecutive requests that can be executed together.
+     */
+    private void execute(List<Request<T>> batch) {
+        int start = 0;
+        while (start < batch.size()) {
+            int end = start + 1;
+            while (end < batch.size() && batch.get(end).batchableWith(batch.get(start))) end++;
+            if (end - start == 1) {
+                executeOne(batch.get(start));
+            } else {
+                executeAll(batch.subList(start, end));
+            }
+            start = end;
+        }
+    }
+
+    private void executeOne(Request<T> request) {
+        try {
+            request.future.complete(request.checkIn ? parking.checkIn(request.car, request.dateTime)
+                    : parking.checkOut(request.car, request.dateTime));
+        } catch (RuntimeException e) {
+            request.future.completeExceptionally(e);
+        }
+    }
+
+    private void executeAll(List<Request<T>> run) {
+        List<T> cars = new ArrayList<>(run.size());
+        for (Request<T> request : run) cars.add(request.car);
+        Request<T> first = run.get(0);
+        List<Object> results = first.checkIn ? parking.checkInEach(cars, first.dateTime)
+                : parking.checkOutEach(cars, first.dateTime);
+        for (int i = 0; i < run.size(); i++) {
+            Object result = results.get(i);
+            if (result instanceof RuntimeException) {
+                run.get(i).future.completeExceptionally((RuntimeException) result);
+            } else {
+                run.get(i).future.complete(result);
+            }
+        }
+    }
+
+    /**
+     * Stop accepting requests, wait for the queued ones to be executed and close the parking
+     * (See {@link Parking#close()}).
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(writer);
+        boolean interrupted = false;
+        while (writer.isAlive()) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        // Requests added while closing
+        Request<T> request;
+        while ((request = requests.poll()) != null) {
+            request.future.completeExceptionally(new ParkingException("The parking is closed !"));
+        }
+        parking.close();
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package io.github.jeallasia.tplapi;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.LongBinaryOperator;
+
+/**
+ * Implementation of {@link PricingPolicy#computePrices(long[], long[], int)} and
+ * {@link PricingPolicy#computePricesParallel(long[], long[], int)}.
+ * Built-in policies (See {@link UnitPricing}) are evaluated directly on the timestamps, other ones through a
+ * {@link ParkingSlot} reused for all the stays of a chunk.
+ *
+ * @param <T> the car class you want to use
+ */
+final class BulkPricing<T> extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Number of stays under which a parallel computation is not split anymore
+     */
+    private static final int CHUNK_SIZE = 4096;
+
+    private final PricingPolicy<T> policy;
+    private final LongBinaryOperator units;
+    private final int scale;
+    private final long[] incomingEpochNanos;
+    private final long[] outgoingEpochNanos;
+    private final long[] prices;
+    private final int from;
+    private final int to;
+
+    private BulkPricing(PricingPolicy<T> policy, LongBinaryOperator units, int scale, long[] incomingEpochNanos,
+                        long[] outgoingEpochNanos, long[] prices, int from, int to) {
+        this.policy = policy;
+        this.units = units;
+        this.scale = scale;
+        this.incomingEpochNanos = incomingEpochNanos;
+        this.outgoingEpochNanos = outgoingEpochNanos;
+        this.prices = prices;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * @param policy             the policy
+     * @param incomingEpochNanos the incoming timestamps
+     * @param outgoingEpochNanos the outgoing timestamps
+     * @param scale              the scale of the units
+     * @param parallel           {@code true} to split the computation in the common {@link ForkJoinPool}
+     * @param <T>                the car class you want to use
+     * @return the prices in units
+     */
+    static <T> long[] computePrices(PricingPolicy<T> policy, long[] incomingEpochNanos, long[] outgoingEpochNanos,
+                                    int scale, boolean parallel) {
+        if (incomingEpochNanos.length != outgoingEpochNanos.length) {
+            throw new IllegalArgumentException("There should be as many outgoing as incoming dates !");
+        }
+        LongBinaryOperator units = UnitPricing.isUnitPricing(policy) ? ((UnitPricing) policy).unitsAt(scale) : null;
+        long[] prices = new long[incomingEpochNanos.length];
+        BulkPricing<T> task = new BulkPricing<>(policy, units, scale, incomingEpochNanos, outgoingEpochNanos, prices,
+                0, prices.length);
+        if (parallel) {
+            ForkJoinPool.commonPool().invoke(task);
+        } else {
+            task.computeRange();
+        }
+        return prices;
+    }
+
+    @Override
+    protected void compute() {
+        if (to - from <= CHUNK_SIZE) {
+            computeRange();
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        invokeAll(new BulkPricing<>(policy, units, scale, incomingEpochNanos, outgoingEpochNanos, prices, from, middle),
+                new BulkPricing<>(policy, units, scale, incomingEpochNanos, outgoingEpochNanos, prices, middle, to));
+    }
+
+    private void computeRange() {
+        ParkingSlot<T> slot = units == null
+                ? new ParkingSlot<>("bulk", 0, PredicateWithAlt.buildAlt(car -> false)) : null;
+        for (int i = from; i < to; i++) {
+            long in = incomingEpochNanos[i];
+            long out = outgoingEpochNanos[i];
+            if (in > out) {
+                throw new IllegalArgumentException("Outgoing date should be after incoming date !");
+            }
+            if (units != null) {
+                prices[i] = units.applyAsLong(in, out);
+            } else {
+                slot.describe(in, out);
+                prices[i] = MinorUnits.toUnits(policy.computePrice(slot), scale);
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package io.github.jeallasia.tplapi;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Converts cars to bytes and back, used to persist the occupancy of a {@link Parking}
+ * (See {@link ParkingBuilder#setJournal(java.nio.file.Path, CarCodec)}).
+ * Cars are indexed by reference in the parking: to check out a restored car, {@link CarCodec#decode(byte[])} can
+ * return your own instance of the car (looked up by its key for example).
+ *
+ * @param <T> the car class you want to use
+ */
+public interface CarCodec<T> {
+
+    /**
+     * @param car the car to encode
+     * @return the bytes describing the car
+     */
+    byte[] encode(T car);
+
+    /**
+     * @param bytes the bytes returned by {@link CarCodec#encode(Object)}
+     * @return the corresponding car
+     */
+    T decode(byte[] bytes);
+
+    /**
+     * Build a codec from a key of the car (like its plate number), encoded in UTF-8.
+     *
+     * @param keyOf   the function computing the key of a car
+     * @param fromKey the function returning the car of a key
+     * @param <T>     the car class you want to use
+     * @return the corresponding codec
+     */
+    static <T> CarCodec<T> ofKey(Function<? super T, String> keyOf, Function<String, ? extends T> fromKey) {
+        Objects.requireNonNull(keyOf);
+        Objects.requireNonNull(fromKey);
+        return new CarCodec<T>() {
+            @Override
+            public byte[] encode(T car) {
+                return keyOf.apply(car).getBytes(StandardCharsets.UTF_8);
+            }
+
+            @Override
+            public T decode(byte[] bytes) {
+                return fromKey.apply(new String(bytes, StandardCharsets.UTF_8));
+            }
+        };
+    }
+}
@@ -44,4 +44,14 @@ public final class CheckInResult<T> {
         return slot;
     }
 
+    /**
+     * Return the tier of the allocated slot for this car (See {@link PredicateWithAlt#tierOf(Object)}).
+     *
+     * @return 0 for a preferred slot, the level of alternative otherwise, {@link PredicateWithAlt#NO_TIER} if no
+     * slot was found
+     */
+    public int getTier() {
+        return slot == null ? PredicateWithAlt.NO_TIER : slot.tier();
+    }
+
 }
@@ -0,0 +1,129 @@
+package io.github.jeallasia.tplapi;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Clock} reading its source only once per resolution period (from a daemon thread), so that reading the time
+ * is a single volatile read for high-rate callers of {@link Parking#checkIn(Object)} and {@link Parking#checkOut(Object)}.
+ * The time returned can be late by up to one resolution period.
+ * Use it with {@link ParkingBuilder#setClock(Clock)}, and {@link CoarseClock#close()} it when the parking is not used anymore.
+ */
+public final class CoarseClock extends Clock implements AutoCloseable {
+
+    private final Ticker ticker;
+    private final ZoneId zone;
+
+    private CoarseClock(Ticker ticker, ZoneId zone) {
+        this.ticker = ticker;
+        this.zone = zone;
+    }
+
+    /**
+     * Create a coarse clock reading the given source.
+     *
+     * @param source     the clock to read
+     * @param resolution the period between two reads of the source
+     * @return the coarse clock, already started
+     */
+    public static CoarseClock of(Clock source, Duration resolution) {
+        Objects.requireNonNull(source);
+        if (resolution.isNegative() || resolution.isZero()) {
+            throw new IllegalArgumentException("Resolution should be positive !");
+        }
+        return new CoarseClock(new Ticker(source, resolution), source.getZone());
+    }
+
+    /**
+     * Create a coarse clock reading {@link Clock#systemDefaultZone()}.
+     *
+     * @param resolution the period between two reads of the system clock
+     * @return the coarse clock, already started
+     */
+    public static CoarseClock systemDefaultZone(Duration resolution) {
+        return of(Clock.systemDefaultZone(), resolution);
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    /**
+     * @param zone the time-zone to use
+     * @return a coarse clock sharing the same reads of the source, in another time-zone
+     */
+    @Override
+    public CoarseClock withZone(ZoneId zone) {
+        return zone.equals(this.zone) ? this : new CoarseClock(ticker, zone);
+    }
+
+    @Override
+    public Instant instant() {
+        return ticker.tick.instant;
+    }
+
+    @Override
+    public long millis() {
+        return ticker.tick.instant.toEpochMilli();
+    }
+
+    /**
+     * @return the timestamp of the last read (See {@link Timestamps})
+     */
+    long localEpochNanos() {
+        Tick tick = ticker.tick;
+        if (zone.equals(ticker.source.getZone())) {
+            return tick.localEpochNanos;
+        }
+        return Timestamps.toEpochNanos(tick.instant, zone.getRules().getOffset(tick.instant));
+    }
+
+    /**
+     * Stop reading the source, the clock keeps returning the last read time.
+     */
+    @Override
+    public void close() {
+        ticker.executor.shutdownNow();
+    }
+
+    /**
+     * A read of the source
+     */
+    private static final class Tick {
+        private final Instant instant;
+        private final long localEpochNanos;
+
+        private Tick(Clock source) {
+            this.instant = source.instant();
+            this.localEpochNanos = Timestamps.toEpochNanos(instant, source.getZone().getRules().getOffset(instant));
+        }
+    }
+
+    /**
+     * Reads the source periodically, shared by all the time-zones of a coarse clock
+     */
+    private static final class Ticker {
+        private final Clock source;
+        private final ScheduledExecutorService executor;
+        private volatile Tick tick;
+
+        private Ticker(Clock source, Duration resolution) {
+            this.source = source;
+            this.tick = new Tick(source);
+            this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "tplapi-coarse-clock");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long period = resolution.toNanos();
+            executor.scheduleAtFixedRate(() -> tick = new Tick(source), period, period, TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package io.github.jeallasia.tplapi;
+
+import javax.money.CurrencyUnit;
+import javax.money.MonetaryAmount;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.LongBinaryOperator;
+
+/**
+ * A tree of built-in pricing policies ({@link PricingPolicy#AND(PricingPolicy, PricingPolicy)},
+ * {@link PricingPolicy#PER_HOUR(MonetaryAmount, boolean)}, {@link PricingPolicy#FIXED(MonetaryAmount)} and
+ * {@link PricingPolicy#TABLE(java.time.Duration, java.time.Duration, java.util.function.Function)}) compiled
+ * into a single evaluator by {@link ParkingBuilder#build()}: the duration is computed once, the price is accumulated
+ * in {@link MinorUnits} and converted to a {@link MonetaryAmount} only at the end.
+ *
+ * @param <T> the car class you want to use
+ */
+final class CompiledPricing<T> implements PricingPolicy<T>, UnitPricing {
+
+    private final PricingPolicy<T> source;
+    private final int scale;
+    /**
+     * The amount of one unit
+     */
+    private final MonetaryAmount unit;
+    private final long fixedUnits;
+    private final long perStartedHourUnits;
+    private final long perFinishedHourUnits;
+    private final TablePricing<T>[] tables;
+    /**
+     * Prices of the tables in units, for each number of started buckets
+     */
+    private final long[][] tableUnits;
+    /**
+     * The last computed price, most check outs have the same price as the previous one
+     */
+    private volatile Price last;
+
+    private CompiledPricing(PricingPolicy<T> source, int scale, MonetaryAmount unit, long fixedUnits,
+                            long perStartedHourUnits, long perFinishedHourUnits, TablePricing<T>[] tables,
+                            long[][] tableUnits) {
+        this.source = source;
+        this.scale = scale;
+        this.unit = unit;
+        this.fixedUnits = fixedUnits;
+        this.perStartedHourUnits = perStartedHourUnits;
+        this.perFinishedHourUnits = perFinishedHourUnits;
+        this.tables = tables;
+        this.tableUnits = tableUnits;
+        this.last = new Price(fixedUnits, MinorUnits.toAmount(fixedUnits, unit));
+    }
+
+    /**
+     * Compile the policy if it is only made of built-in policies using the same currency.
+     *
+     * @param policy the policy to compile
+     * @param <T>    the car class you want to use
+     * @return the compiled policy, or the policy itself if it can't be compiled
+     */
+    static <T> PricingPolicy<T> compile(PricingPolicy<T> policy) {
+        // A table alone is already a lookup of cached amounts
+        if (policy == null || policy instanceof CompiledPricing || policy instanceof TablePricing) {
+            return policy;
+        }
+        List<PricingPolicy<T>> leaves = new ArrayList<>();
+        Deque<PricingPolicy<T>> toVisit = new ArrayDeque<>();
+        toVisit.push(policy);
+        while (!toVisit.isEmpty()) {
+            PricingPolicy<T> current = toVisit.pop();
+            if (current instanceof AndPricing) {
+                // Visit the first policy first, the result has the type of the left most amount
+                toVisit.push(((AndPricing<T>) current).getPolicy2());
+                toVisit.push(((AndPricing<T>) current).getPolicy1());
+            } else if (current instanceof FixedPricing || current instanceof PerHourPricing
+                    || current instanceof TablePricing) {
+                leaves.add(current);
+            } else {
+                return policy;
+            }
+        }
+        MonetaryAmount template = amountsOf(leaves.get(0))[0];
+        CurrencyUnit currency = template.getCurrency();
+        int scale = 0;
+        for (PricingPolicy<T> leaf : leaves) {
+            for (MonetaryAmount amount : amountsOf(leaf)) {
+                if (!currency.equals(amount.getCurrency())) {
+                    return policy;
+                }
+                scale = Math.max(scale, MinorUnits.scaleOf(amount));
+            }
+        }
+        if (scale > MinorUnits.MAX_SCALE) {
+            return policy;
+        }
+        try {
+            long fixedUnits = 0, perStartedHourUnits = 0, perFinishedHourUnits = 0;
+            List<TablePricing<T>> tables = new ArrayList<>();
+            List<long[]> tableUnits = new ArrayList<>();
+            for (PricingPolicy<T> leaf : leaves) {
+                if (leaf instanceof TablePricing) {
+                    MonetaryAmount[] prices = ((TablePricing<T>) leaf).getPrices();
+                    long[] units = new long[prices.length];
+                    for (int i = 0; i < prices.length; i++) units[i] = MinorUnits.toUnits(prices[i], scale);
+                    tables.add((TablePricing<T>) leaf);
+                    tableUnits.add(units);
+                    continue;
+                }
+                long units = MinorUnits.toUnits(amountsOf(leaf)[0], scale);
+                if (leaf instanceof FixedPricing) {
+                    fixedUnits = Math.addExact(fixedUnits, units);
+                } else if (((PerHourPricing<T>) leaf).isCountHourStarted()) {
+                    perStartedHourUnits = Math.addExact(perStartedHourUnits, units);
+                } else {
+                    perFinishedHourUnits = Math.addExact(perFinishedHourUnits, units);
+                }
+            }
+            TablePricing<T>[] tableArray = tables.toArray(CompiledPricing.<T>newTables(tables.size()));
+            return new CompiledPricing<>(policy, scale, MinorUnits.unitOf(scale, template), fixedUnits, perStartedHourUnits, perFinishedHourUnits,
+                    tableArray, tableUnits.toArray(new long[0][]));
+        } catch (ArithmeticException e) {
+            return policy;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> TablePricing<T>[] newTables(int size) {
+        return (TablePricing<T>[]) new TablePricing<?>[size];
+    }
+
+    private static MonetaryAmount[] amountsOf(PricingPolicy<?> leaf) {
+        if (leaf instanceof FixedPricing) {
+            return new MonetaryAmount[]{((FixedPricing<?>) leaf).getFixedPrice()};
+        }
+        if (leaf instanceof TablePricing) {
+            return ((TablePricing<?>) leaf).getPrices();
+        }
+        return new MonetaryAmount[]{((PerHourPricing<?>) leaf).getPricePerHour()};
+    }
+
+    /**
+     * @return the policy that was compiled
+     */
+    PricingPolicy<T> getSource() {
+        return source;
+    }
+
+    /**
+     * @param durationNanos the duration in nanoseconds
+     * @return the price in units
+     * @throws ArithmeticException on overflow
+     */
+    private long computeUnits(long durationNanos) {
+        long units = Math.addExact(fixedUnits, Math.addExact(
+                Math.multiplyExact(PerHourPricing.countHours(durationNanos, true), perStartedHourUnits),
+                Math.multiplyExact(PerHourPricing.countHours(durationNanos, false), perFinishedHourUnits)));
+        for (int i = 0; i < tables.length; i++) {
+            units = Math.addExact(units, tables[i].computeUnits(tableUnits[i], durationNanos));
+        }
+        return units;
+    }
+
+    @Override
+    public LongBinaryOperator unitsAt(int scale) {
+        if (scale < this.scale) {
+            return ((UnitPricing) source).unitsAt(scale);
+        }
+        return (incomingEpochNanos, outgoingEpochNanos) ->
+                MinorUnits.rescale(computeUnits(outgoingEpochNanos - incomingEpochNanos), this.scale, scale);
+    }
+
+    @Override
+    public MonetaryAmount computePrice(ParkingSlot<T> slot) {
+        long units;
+        try {
+            units = computeUnits(slot.computeDurationNanos());
+        } catch (ArithmeticException e) {
+            return source.computePrice(slot);
+        }
+        if (Math.abs(units) > MinorUnits.MAX_EXACT_UNITS) {
+            return source.computePrice(slot);
+        }
+        Price price = last;
+        if (price.units != units) {
+            price = new Price(units, MinorUnits.toAmount(units, unit));
+            last = price;
+        }
+        return price.amount;
+    }
+
+    /**
+     * A price and its number of units
+     */
+    private static final class Price {
+        private final long units;
+        private final MonetaryAmount amount;
+
+        private Price(long units, MonetaryAmount amount) {
+            this.units = units;
+            this.amount = amount;
+        }
+    }
+}
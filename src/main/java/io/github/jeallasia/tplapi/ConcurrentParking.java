@@ -0,0 +1,550 @@
+package io.github.jeallasia.tplapi;
+
+import io.github.jeallasia.tplapi.exception.ParkingException;
+
+import javax.money.MonetaryAmount;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * {@link Parking} allowing concurrent {@link Parking#checkIn(Object)} and {@link Parking#checkOut(Object)}.
+ * Instead of locking the whole parking, each {@link SlotPool} is locked only while a slot is taken from or given
+ * back to it, and cars are indexed in lock striped maps. A slot can't be allocated to two cars, and a car can't be
+ * checked in or out twice. Declaring zones (See {@link ParkingBuilder#setZone(String)}) splits the pools further: cars
+ * of different home zones then take their slots from different pools.
+ * Build it using {@link ParkingBuilder#setConcurrent(boolean)}.
+ *
+ * @param <T> the car class you want to use
+ */
+public class ConcurrentParking<T> extends Parking<T> {
+
+    /**
+     * Occupied slots indexed by car (reference equality), each stripe is guarded by its own lock
+     */
+    private final Stripe<T>[] stripes;
+    private final int stripeMask;
+
+    /**
+     * Part of the occupied and reserved slots indexed by car, and its lock
+     */
+    private static final class Stripe<T> {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Map<T, ParkingSlot<T>> cars = new IdentityHashMap<>();
+        private final Map<T, Reservation<T>> reservations = new IdentityHashMap<>();
+    }
+
+    /**
+     * Constructor, used from the Builder.
+     */
+    ConcurrentParking() {
+        int nbrStripes = Integer.highestOneBit(Math.max(16, Runtime.getRuntime().availableProcessors() * 4) - 1) << 1;
+        this.stripes = newStripes(nbrStripes);
+        for (int i = 0; i < nbrStripes; i++) stripes[i] = new Stripe<>();
+        this.stripeMask = nbrStripes - 1;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Stripe<T>[] newStripes(int nbrStripes) {
+        return (Stripe<T>[]) new Stripe<?>[nbrStripes];
+    }
+
+    private Stripe<T> stripeOf(T car) {
+        int h = System.identityHashCode(car);
+        return stripes[(h ^ (h >>> 16)) & stripeMask];
+    }
+
+    /**
+     * Allow you to check in a car.
+     * It will take the first free slot of the lowest tier (See {@link PredicateWithAlt#tierOf(Object)}).
+     * Only the pool of the selected slot is locked while the slot is taken.
+     *
+     * @param car              The car you want to check in.
+     * @param incomingDateTime The incoming date and time.
+     * @return {@link CheckInResult} containing the corresponding slot (or not containing any if no slot where found)
+     * @throws ParkingException if the car is already in the parking, or if the journal can't be written
+     * @throws IllegalArgumentException if the date time is out of the supported range ({@link Parking#MIN_DATE_TIME}
+     *                                  to {@link Parking#MAX_DATE_TIME})
+     */
+    @Override
+    public CheckInResult<T> checkIn(T car, LocalDateTime incomingDateTime) {
+        checkJournal();
+        CheckInResult<T> result = new CheckInResult<>();
+        Stripe<T> stripe = stripeOf(car);
+        long start = startTimer();
+        expireReservations(Timestamps.toEpochNanos(incomingDateTime));
+        stripe.lock.lock();
+        long acquired = lockAcquired(start);
+        try {
+            ParkingSlot<T> slot = occupy(stripe, car, incomingDateTime);
+            if (slot != null) {
+                result.setSlot(slot.copy());
+            }
+        } finally {
+            served(acquired);
+            stripe.lock.unlock();
+        }
+        return result;
+    }
+
+    /**
+     * Allow you to check in a car, without allocating any result (See {@link SlotHandle}).
+     *
+     * @param car              The car you want to check in.
+     * @param incomingDateTime The incoming date and time.
+     * @param handle           The handle filled with the allocated slot (cleared if no slot where found).
+     * @return {@code true} if a slot was found
+     * @throws ParkingException if the car is already in the parking, or if the journal can't be written
+     * @throws IllegalArgumentException if the date time is out of the supported range ({@link Parking#MIN_DATE_TIME}
+     *                                  to {@link Parking#MAX_DATE_TIME})
+     */
+    @Override
+    public boolean checkIn(T car, LocalDateTime incomingDateTime, SlotHandle<T> handle) {
+        checkJournal();
+        Stripe<T> stripe = stripeOf(car);
+        long start = startTimer();
+        expireReservations(Timestamps.toEpochNanos(incomingDateTime));
+        stripe.lock.lock();
+        long acquired = lockAcquired(start);
+        try {
+            ParkingSlot<T> slot = occupy(stripe, car, incomingDateTime);
+            if (slot == null) {
+                handle.clear();
+                return false;
+            }
+            handle.fill(slot, null);
+            return true;
+        } finally {
+            served(acquired);
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * Allocate a slot to the car (its reserved slot if any), the caller holds the lock of the car stripe.
+     *
+     * @param stripe           The stripe of the car.
+     * @param car              The car you want to check in.
+     * @param incomingDateTime The incoming date and time.
+     * @return the allocated slot, {@code null} if no slot where found
+     * @throws ParkingException if the car is already in the parking
+     */
+    private ParkingSlot<T> occupy(Stripe<T> stripe, T car, LocalDateTime incomingDateTime) {
+        Objects.requireNonNull(car);
+        Objects.requireNonNull(incomingDateTime);
+        if (stripe.cars.containsKey(car)) {
+            throw new ParkingException("Car " + car + " already checked in !");
+        }
+        Reservation<T> reservation = stripe.reservations.remove(car);
+        if (reservation != null && reservation.claim()) {
+            ParkingSlot<T> slot = reservation.getSlot();
+            SlotPool<T> pool = getPool(slot);
+            if (reservation.isExpired(Timestamps.toEpochNanos(incomingDateTime))) {
+                // Expired, but not given back yet by another thread
+                releaseReserved(slot);
+            } else {
+                try {
+                    slot.occupy(car, incomingDateTime, reservation.getTier());
+                } catch (RuntimeException e) {
+                    // The reservation is claimed, give back its slot
+                    releaseReserved(slot);
+                    throw e;
+                }
+                pool.getLock().lock();
+                try {
+                    pool.reservationUsed();
+                } finally {
+                    pool.getLock().unlock();
+                }
+                stripe.cars.put(car, slot);
+                fireCheckedIn(slot);
+                return slot;
+            }
+        }
+        PoolSelection<T> selection = getSelection(car);
+        int home = homeZoneOf(car);
+        SlotPool<T> pool = findPool(car, selection, home);
+        while (pool != null) {
+            int tier = tierOf(car, selection, pool);
+            ParkingSlot<T> slot;
+            pool.getLock().lock();
+            try {
+                // Occupied before leaving the pool, so that the slot is not lost if the car can't be put in
+                slot = pool.peekFree();
+                if (slot != null) {
+                    slot.occupy(car, incomingDateTime, tier);
+                    pool.pollFree();
+                }
+            } finally {
+                pool.getLock().unlock();
+            }
+            if (slot != null) {
+                stripe.cars.put(car, slot);
+                fireCheckedIn(slot);
+                return slot;
+            }
+            // The pool was emptied by a concurrent check in, look again
+            pool = findPool(car, selection, home);
+        }
+        fireRejected(car);
+        return null;
+    }
+
+    /**
+     * Check in the car now, according to the clock of the parking (See {@link ParkingBuilder#setClock(java.time.Clock)})
+     *
+     * @param car The car you want to check in.
+     * @return {@link CheckInResult} containing the corresponding slot (or not containing any if no slot where found)
+     */
+    @Override
+    public CheckInResult<T> checkIn(T car) {
+        return checkIn(car, now());
+    }
+
+    /**
+     * Allow you to check out a car.
+     * Only the stripe of the car is locked while the price is computed and the check out is notified, so that the
+     * events of a car are never reordered by a concurrent check in of the same car. The slot is given back afterwards.
+     *
+     * @param car              The car you want to check out.
+     * @param outgoingDateTime The outgoing date and time.
+     * @return {@link CheckOutResult} containing the corresponding slot and price.
+     * @throws ParkingException if the car is not in the parking, or if the journal can't be written
+     * @throws IllegalArgumentException if the date time is out of the supported range ({@link Parking#MIN_DATE_TIME}
+     *                                  to {@link Parking#MAX_DATE_TIME})
+     */
+    @Override
+    public CheckOutResult<T> checkOut(T car, LocalDateTime outgoingDateTime) {
+        checkJournal();
+        Stripe<T> stripe = stripeOf(car);
+        ParkingSlot<T> slot;
+        ParkingSlot<T> usage;
+        long start = startTimer();
+        long acquired;
+        stripe.lock.lock();
+        try {
+            acquired = lockAcquired(start);
+            slot = stripe.cars.get(car);
+            if (slot == null) {
+                throw new ParkingException("Car " + car + " not found !");
+            }
+            usage = slot.free(outgoingDateTime);
+        } catch (RuntimeException e) {
+            stripe.lock.unlock();
+            throw e;
+        }
+        MonetaryAmount price = null;
+        try {
+            price = getPricingPolicy().computePrice(usage);
+            return new CheckOutResult<>(usage, price);
+        } finally {
+            try {
+                // Notified before the car can be checked in again, and before the slot can be allocated again
+                fireCheckedOut(usage, price);
+                stripe.cars.remove(car);
+            } finally {
+                stripe.lock.unlock();
+            }
+            release(slot);
+            served(acquired);
+        }
+    }
+
+    /**
+     * Allow you to check out a car, without allocating any result (See {@link SlotHandle}).
+     * The price is computed on the slot itself holding only the lock of the car stripe, then the slot is given back.
+     *
+     * @param car              The car you want to check out.
+     * @param outgoingDateTime The outgoing date and time.
+     * @param handle           The handle filled with the freed slot and the price.
+     * @return the computed price
+     * @throws ParkingException if the car is not in the parking, or if the journal can't be written
+     * @throws IllegalArgumentException if the date time is out of the supported range ({@link Parking#MIN_DATE_TIME}
+     *                                  to {@link Parking#MAX_DATE_TIME})
+     */
+    @Override
+    public MonetaryAmount checkOut(T car, LocalDateTime outgoingDateTime, SlotHandle<T> handle) {
+        checkJournal();
+        Stripe<T> stripe = stripeOf(car);
+        ParkingSlot<T> slot;
+        long start = startTimer();
+        long acquired;
+        stripe.lock.lock();
+        try {
+            acquired = lockAcquired(start);
+            slot = stripe.cars.get(car);
+            if (slot == null) {
+                throw new ParkingException("Car " + car + " not found !");
+            }
+            slot.leave(outgoingDateTime);
+        } catch (RuntimeException e) {
+            stripe.lock.unlock();
+            throw e;
+        }
+        // The slot is owned by this thread until it is given back
+        MonetaryAmount price = null;
+        try {
+            price = getPricingPolicy().computePrice(slot);
+            handle.fill(slot, price);
+            return price;
+        } finally {
+            try {
+                fireCheckedOut(slot, price);
+                stripe.cars.remove(car);
+            } finally {
+                stripe.lock.unlock();
+            }
+            slot.clear();
+            release(slot);
+            served(acquired);
+        }
+    }
+
+    @Override
+    void index(T car, ParkingSlot<T> slot) {
+        if (stripeOf(car).cars.putIfAbsent(car, slot) != null) {
+            throw new ParkingException("Car " + car + " already checked in !");
+        }
+    }
+
+    @Override
+    boolean isCheckedIn(T car) {
+        Stripe<T> stripe = stripeOf(car);
+        stripe.lock.lock();
+        try {
+            return stripe.cars.containsKey(car);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * Copy the occupied slots holding the locks of all the stripes, in order.
+     */
+    @Override
+    List<ParkingSlot<T>> copyOccupiedSlots() {
+        List<ParkingSlot<T>> occupied = new ArrayList<>();
+        copyOccupiedSlots(0, occupied);
+        return occupied;
+    }
+
+    private void copyOccupiedSlots(int index, List<ParkingSlot<T>> occupied) {
+        stripes[index].lock.lock();
+        try {
+            if (index + 1 < stripes.length) {
+                copyOccupiedSlots(index + 1, occupied);
+                return;
+            }
+            for (Stripe<T> stripe : stripes) {
+                for (ParkingSlot<T> slot : stripe.cars.values()) occupied.add(slot.copy());
+            }
+        } finally {
+            stripes[index].lock.unlock();
+        }
+    }
+
+    private void release(ParkingSlot<T> slot) {
+        SlotPool<T> pool = getPool(slot);
+        pool.getLock().lock();
+        try {
+            pool.release(slot);
+        } finally {
+            pool.getLock().unlock();
+        }
+    }
+
+    private void releaseReserved(ParkingSlot<T> slot) {
+        SlotPool<T> pool = getPool(slot);
+        pool.getLock().lock();
+        try {
+            pool.releaseReserved(slot);
+        } finally {
+            pool.getLock().unlock();
+        }
+    }
+
+    /**
+     * Hold a slot for a car expected to arrive, locking only the stripe of the car and the pool of the slot
+     * (See {@link Parking#reserve(Object, LocalDateTime, Duration)}).
+     *
+     * @param car                 The car you want to reserve a slot for.
+     * @param reservationDateTime The date and time of the reservation.
+     * @param holdFor             How long the slot is held.
+     * @return {@link ReservationResult} containing the id of the reserved slot (or not containing any if no slot where found)
+     * @throws ParkingException if the car is already in the parking or has already reserved a slot
+     * @throws IllegalArgumentException if holdFor is not positive
+     * @throws IllegalArgumentException if the date time is out of the supported range ({@link Parking#MIN_DATE_TIME}
+     *                                  to {@link Parking#MAX_DATE_TIME})
+     */
+    @Override
+    public ReservationResult reserve(T car, LocalDateTime reservationDateTime, Duration holdFor) {
+        Objects.requireNonNull(car);
+        long expiryEpochNanos = expiryOf(reservationDateTime, holdFor);
+        long reservationEpochNanos = Timestamps.toEpochNanos(reservationDateTime);
+        expireReservations(reservationEpochNanos);
+        Stripe<T> stripe = stripeOf(car);
+        stripe.lock.lock();
+        try {
+            Reservation<T> current = stripe.reservations.get(car);
+            if (stripe.cars.containsKey(car) || current != null && !current.isExpired(reservationEpochNanos)) {
+                throw new ParkingException("Car " + car + " already checked in or reserved !");
+            }
+            PoolSelection<T> selection = getSelection(car);
+            int home = homeZoneOf(car);
+            SlotPool<T> pool = findPool(car, selection, home);
+            while (pool != null) {
+                ParkingSlot<T> slot;
+                pool.getLock().lock();
+                try {
+                    slot = pool.reserveFree();
+                } finally {
+                    pool.getLock().unlock();
+                }
+                if (slot != null) {
+                    Reservation<T> reservation = new Reservation<>(car, slot, tierOf(car, selection, pool),
+                            expiryEpochNanos);
+                    // Replaces an expired reservation, which is given back by the thread expiring it
+                    stripe.reservations.put(car, reservation);
+                    getReservations().add(reservation);
+                    return new ReservationResult(slot.getId(), Timestamps.toLocalDateTime(expiryEpochNanos));
+                }
+                // The pool was emptied by a concurrent check in, look again
+                pool = findPool(car, selection, home);
+            }
+            return new ReservationResult(null, null);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * Give back the slot reserved for a car (See {@link Parking#cancelReservation(Object)}).
+     *
+     * @param car The car that reserved a slot.
+     * @return {@code true} if the car had a reservation (possibly expired but not yet given back)
+     */
+    @Override
+    public boolean cancelReservation(T car) {
+        Stripe<T> stripe = stripeOf(car);
+        Reservation<T> reservation;
+        stripe.lock.lock();
+        try {
+            reservation = stripe.reservations.remove(car);
+        } finally {
+            stripe.lock.unlock();
+        }
+        if (reservation == null || !reservation.claim()) {
+            return false;
+        }
+        releaseReserved(reservation.getSlot());
+        return true;
+    }
+
+    /**
+     * Give back the slots of the reservations expired at this timestamp, the caller must not hold any stripe lock
+     * (the stripe of each expired car is locked in turn).
+     *
+     * @param epochNanos the current timestamp (See {@link Timestamps})
+     */
+    @Override
+    void expireReservations(long epochNanos) {
+        for (Reservation<T> reservation : getReservations().pollExpired(epochNanos)) {
+            if (reservation.claim()) {
+                Stripe<T> stripe = stripeOf(reservation.getCar());
+                stripe.lock.lock();
+                try {
+                    stripe.reservations.remove(reservation.getCar(), reservation);
+                } finally {
+                    stripe.lock.unlock();
+                }
+                releaseReserved(reservation.getSlot());
+            }
+        }
+    }
+
+    /**
+     * Check out the car now, according to the clock of the parking (See {@link ParkingBuilder#setClock(java.time.Clock)})
+     *
+     * @param car The car you want to check out.
+     * @return {@link CheckOutResult} containing the corresponding slot and price.
+     */
+    @Override
+    public CheckOutResult<T> checkOut(T car) {
+        return checkOut(car, now());
+    }
+
+    /**
+     * Check in a batch of cars, one by one without locking the whole parking.
+     * Unlike {@link Parking#checkInAll(Collection, LocalDateTime)} it is not atomic, cars before one already in the
+     * parking are checked in.
+     *
+     * @param cars             The cars you want to check in.
+     * @param incomingDateTime The incoming date and time.
+     * @return {@link CheckInResult} for each car, in the same order
+     * @throws ParkingException if one of the cars is already in the parking, or if the journal can't be written
+     * @throws IllegalArgumentException if the date time is out of the supported range ({@link Parking#MIN_DATE_TIME}
+     *                                  to {@link Parking#MAX_DATE_TIME})
+     */
+    @Override
+    public List<CheckInResult<T>> checkInAll(Collection<T> cars, LocalDateTime incomingDateTime) {
+        List<CheckInResult<T>> results = new ArrayList<>(cars.size());
+        for (T car : cars) {
+            results.add(checkIn(car, incomingDateTime));
+        }
+        return results;
+    }
+
+    /**
+     * Check out a batch of cars, one by one without locking the whole parking.
+     * Unlike {@link Parking#checkOutAll(Collection, LocalDateTime)} it is not atomic, cars before one not found are
+     * checked out.
+     *
+     * @param cars             The cars you want to check out.
+     * @param outgoingDateTime The outgoing date and time.
+     * @return {@link CheckOutResult} for each car, in the same order
+     * @throws ParkingException if one of the cars is not in the parking, or if the journal can't be written
+     * @throws IllegalArgumentException if the date time is out of the supported range ({@link Parking#MIN_DATE_TIME}
+     *                                  to {@link Parking#MAX_DATE_TIME})
+     */
+    @Override
+    public List<CheckOutResult<T>> checkOutAll(Collection<T> cars, LocalDateTime outgoingDateTime) {
+        List<CheckOutResult<T>> results = new ArrayList<>(cars.size());
+        for (T car : cars) {
+            results.add(checkOut(car, outgoingDateTime));
+        }
+        return results;
+    }
+
+    @Override
+    List<Object> checkInEach(List<T> cars, LocalDateTime incomingDateTime) {
+        List<Object> results = new ArrayList<>(cars.size());
+        for (T car : cars) {
+            try {
+                results.add(checkIn(car, incomingDateTime));
+            } catch (RuntimeException e) {
+                results.add(e);
+            }
+        }
+        return results;
+    }
+
+    @Override
+    List<Object> checkOutEach(List<T> cars, LocalDateTime outgoingDateTime) {
+        List<Object> results = new ArrayList<>(cars.size());
+        for (T car : cars) {
+            try {
+                results.add(checkOut(car, outgoingDateTime));
+            } catch (RuntimeException e) {
+                results.add(e);
+            }
+        }
+        return results;
+    }
+
+}
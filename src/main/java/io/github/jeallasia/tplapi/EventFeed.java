@@ -0,0 +1,74 @@
+package io.github.jeallasia.tplapi;
+
+import javax.money.MonetaryAmount;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Publish the check ins, check outs and rejections of a {@link Parking} to its subscribers
+ * (See {@link Parking#subscribe(Flow.Subscriber)}).
+ * Each subscriber has its own bounded buffer and is served asynchronously, in batches of the events it requested:
+ * the parking never waits for a subscriber, the events a slow subscriber has no room for are dropped and counted.
+ *
+ * @param <T> the car class you want to use
+ */
+final class EventFeed<T> implements SlotListener<T>, AutoCloseable {
+
+    static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Threads delivering the events, a subscriber is served by at most one thread at a time
+     */
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "tplapi-events");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final SubmissionPublisher<ParkingEvent<T>> publisher = new SubmissionPublisher<>(executor, BUFFER_SIZE);
+    private final LongAdder dropped = new LongAdder();
+
+    void subscribe(Flow.Subscriber<? super ParkingEvent<T>> subscriber) {
+        publisher.subscribe(subscriber);
+    }
+
+    /**
+     * @return the number of events dropped since the feed was created
+     */
+    long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    private void publish(ParkingEvent<T> event) {
+        publisher.offer(event, (subscriber, e) -> {
+            dropped.increment();
+            return false;
+        });
+    }
+
+    @Override
+    public void checkedIn(ParkingSlot<T> slot) {
+        publish(new ParkingEvent<>(ParkingEvent.Type.CHECK_IN, slot.getCar(), slot.copy(), null));
+    }
+
+    @Override
+    public void checkedOut(ParkingSlot<T> slot, MonetaryAmount price) {
+        publish(new ParkingEvent<>(ParkingEvent.Type.CHECK_OUT, slot.getCar(), slot.copy(), price));
+    }
+
+    @Override
+    public void rejected(T car) {
+        publish(new ParkingEvent<>(ParkingEvent.Type.REJECTED, car, null, null));
+    }
+
+    /**
+     * Complete the subscriptions once their buffered events are delivered.
+     */
+    @Override
+    public void close() {
+        publisher.close();
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,33 @@
+package io.github.jeallasia.tplapi;
+
+import javax.money.MonetaryAmount;
+import java.util.function.LongBinaryOperator;
+
+/**
+ * {@link PricingPolicy#FIXED(MonetaryAmount)}, kept as a class so that it can be compiled (See {@link CompiledPricing})
+ *
+ * @param <T> the car class you want to use
+ */
+final class FixedPricing<T> implements PricingPolicy<T>, UnitPricing {
+
+    private final MonetaryAmount fixedPrice;
+
+    FixedPricing(MonetaryAmount fixedPrice) {
+        this.fixedPrice = fixedPrice;
+    }
+
+    MonetaryAmount getFixedPrice() {
+        return fixedPrice;
+    }
+
+    @Override
+    public LongBinaryOperator unitsAt(int scale) {
+        long units = MinorUnits.toUnits(fixedPrice, scale);
+        return (incomingEpochNanos, outgoingEpochNanos) -> units;
+    }
+
+    @Override
+    public MonetaryAmount computePrice(ParkingSlot<T> slot) {
+        return fixedPrice;
+    }
+}
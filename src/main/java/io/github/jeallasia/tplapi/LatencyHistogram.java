@@ -0,0 +1,109 @@
+package io.github.jeallasia.tplapi;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of latencies in nanoseconds, with a bounded relative error (12.5%) like an HDR histogram: values below
+ * 16 ns have their own bucket, then each power of two is divided into 8 buckets. Recording a value only increments
+ * striped counters, so that concurrent threads don't contend on it.
+ */
+public final class LatencyHistogram {
+
+    private static final int LINEAR_BUCKETS = 16;
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int NBR_BUCKETS = LINEAR_BUCKETS + (63 - 4) * SUB_BUCKETS;
+
+    private final LongAdder[] buckets = new LongAdder[NBR_BUCKETS];
+    private final LongAdder total = new LongAdder();
+
+    LatencyHistogram() {
+        for (int i = 0; i < NBR_BUCKETS; i++) buckets[i] = new LongAdder();
+    }
+
+    private static int indexOf(long nanos) {
+        if (nanos < LINEAR_BUCKETS) {
+            return (int) Math.max(nanos, 0);
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR_BUCKETS + (exponent - 4) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @param index the index of a bucket
+     * @return the highest value of the bucket
+     */
+    private static long highestValueOf(int index) {
+        if (index < LINEAR_BUCKETS) {
+            return index;
+        }
+        int exponent = (index - LINEAR_BUCKETS) / SUB_BUCKETS + 4;
+        int subBucket = (index - LINEAR_BUCKETS) % SUB_BUCKETS;
+        int shift = exponent - SUB_BUCKET_BITS;
+        return ((long) (SUB_BUCKETS + subBucket) << shift) + (1L << shift) - 1;
+    }
+
+    /**
+     * @param nanos the latency to record
+     */
+    void record(long nanos) {
+        buckets[indexOf(nanos)].increment();
+        total.add(nanos);
+    }
+
+    /**
+     * Return the number of recorded latencies
+     *
+     * @return the number of recorded latencies
+     */
+    public long getCount() {
+        long count = 0;
+        for (LongAdder bucket : buckets) count += bucket.sum();
+        return count;
+    }
+
+    /**
+     * Return the mean of the recorded latencies
+     *
+     * @return the mean, {@link Duration#ZERO} if none was recorded
+     */
+    public Duration getMean() {
+        long count = getCount();
+        return count == 0 ? Duration.ZERO : Duration.ofNanos(total.sum() / count);
+    }
+
+    /**
+     * Return the latency below which the given percentage of the recorded latencies fall (rounded up to the highest
+     * value of its bucket).
+     *
+     * @param percentile the percentage, between 0 and 100
+     * @return the latency, {@link Duration#ZERO} if none was recorded
+     * @throws IllegalArgumentException if the percentile is not between 0 and 100
+     */
+    public Duration getValueAtPercentile(double percentile) {
+        if (!(percentile >= 0 && percentile <= 100)) {
+            throw new IllegalArgumentException("The percentile should be between 0 and 100 !");
+        }
+        long[] counts = new long[NBR_BUCKETS];
+        long count = 0;
+        for (int i = 0; i < NBR_BUCKETS; i++) {
+            counts[i] = buckets[i].sum();
+            count += counts[i];
+        }
+        if (count == 0) {
+            return Duration.ZERO;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        int last = 0;
+        for (int i = 0; i < NBR_BUCKETS; i++) {
+            if (counts[i] == 0) continue;
+            last = i;
+            seen += counts[i];
+            if (seen >= rank) break;
+        }
+        return Duration.ofNanos(highestValueOf(last));
+    }
+}
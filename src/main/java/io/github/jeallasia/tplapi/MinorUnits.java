@@ -0,0 +1,84 @@
+package io.github.jeallasia.tplapi;
+
+import javax.money.MonetaryAmount;
+import java.math.BigDecimal;
+
+/**
+ * Conversions between {@link MonetaryAmount} and fixed-point {@code long} amounts: the number of units of
+ * {@code 10^-scale} (cents for a scale of 2), used to price without Moneta arithmetic.
+ */
+final class MinorUnits {
+
+    /**
+     * Greatest supported scale, so that usual prices can't overflow
+     */
+    static final int MAX_SCALE = 9;
+    /**
+     * Greatest number of units converted back exactly (Moneta amounts keep 16 significant digits by default)
+     */
+    static final long MAX_EXACT_UNITS = 999_999_999_999_999L;
+
+    private MinorUnits() {
+    }
+
+    /**
+     * @param amount the amount
+     * @return the smallest scale representing the amount exactly (never negative)
+     */
+    static int scaleOf(MonetaryAmount amount) {
+        return Math.max(0, toBigDecimal(amount).stripTrailingZeros().scale());
+    }
+
+    /**
+     * @param amount the amount to convert
+     * @param scale  the scale of the units
+     * @return the number of units
+     * @throws ArithmeticException if the amount can't be represented exactly
+     */
+    static long toUnits(MonetaryAmount amount, int scale) {
+        return toBigDecimal(amount).movePointRight(scale).longValueExact();
+    }
+
+    /**
+     * @param scale    the scale of the units
+     * @param template an amount giving the currency and the implementation of the result
+     * @return the amount of one unit, to be used with {@link MinorUnits#toAmount(long, MonetaryAmount)}
+     */
+    static MonetaryAmount unitOf(int scale, MonetaryAmount template) {
+        return template.getFactory().setNumber(BigDecimal.valueOf(1, scale)).create();
+    }
+
+    /**
+     * @param units the number of units to convert
+     * @param unit  the amount of one unit (much cheaper than building the amount with a factory)
+     * @return the corresponding amount
+     */
+    static MonetaryAmount toAmount(long units, MonetaryAmount unit) {
+        return unit.multiply(units);
+    }
+
+    /**
+     * @param exponent the exponent (at most 18)
+     * @return 10 to the power of exponent
+     */
+    static long pow10(int exponent) {
+        long result = 1;
+        for (int i = 0; i < exponent; i++) result = Math.multiplyExact(result, 10);
+        return result;
+    }
+
+    /**
+     * @param units     a number of units
+     * @param fromScale the scale of these units
+     * @param toScale   the scale of the result, at least fromScale
+     * @return the same amount in units of the new scale
+     * @throws ArithmeticException on overflow
+     */
+    static long rescale(long units, int fromScale, int toScale) {
+        return fromScale == toScale ? units : Math.multiplyExact(units, pow10(toScale - fromScale));
+    }
+
+    private static BigDecimal toBigDecimal(MonetaryAmount amount) {
+        return amount.getNumber().numberValue(BigDecimal.class);
+    }
+}
@@ -1,11 +1,31 @@
 package io.github.jeallasia.tplapi;
 
+import io.github.jeallasia.tplapi.PoolSelection.Match;
 import io.github.jeallasia.tplapi.exception.ParkingException;
 
+import javax.money.MonetaryAmount;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.time.Clock;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.stream.Stream;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Flow;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Function;
 
 /**
  * Parking class compatible with any kind of Car class, allowing {@link Parking#checkIn(Object)} to the right slot
@@ -13,16 +33,99 @@ import java.util.stream.Stream;
  * See {@link Parking#builder()} that returns a {@link ParkingBuilder} to specify parking slot allocation policy and pricing policy.
  * @param <T> the car class you want to use
  */
-public class Parking<T> {
+public class Parking<T> implements AutoCloseable {
+
+    /**
+     * Zone of the slots added before any {@link ParkingBuilder#setZone(String)}
+     */
+    public static final String DEFAULT_ZONE = "default";
+    /**
+     * First date time supported by the check ins, check outs and reservations (timestamps are stored in nanoseconds)
+     */
+    public static final LocalDateTime MIN_DATE_TIME = Timestamps.MIN_DATE_TIME;
+    /**
+     * Last date time supported by the check ins, check outs and reservations (timestamps are stored in nanoseconds)
+     */
+    public static final LocalDateTime MAX_DATE_TIME = Timestamps.MAX_DATE_TIME;
 
     /**
      * All slots in the parking
      */
     private final List<ParkingSlot<T>> slots = new ArrayList<>();
+    /**
+     * Slots grouped by zone and policy instance (in order of first appearance)
+     */
+    private final List<SlotPool<T>> pools = new ArrayList<>();
+    /**
+     * Names of the zones, in order of first appearance, see {@link ParkingBuilder#setZone(String)}
+     */
+    private final List<String> zones = new ArrayList<>();
+    /**
+     * Pools of each zone indexed by policy instance
+     */
+    private final List<Map<PredicateWithAlt<T>, SlotPool<T>>> poolsByZone = new ArrayList<>();
+    /**
+     * Occupied slots indexed by car (reference equality)
+     */
+    private final Map<T, ParkingSlot<T>> slotsByCar = new IdentityHashMap<>();
+    /**
+     * Reserved slots indexed by car (reference equality)
+     */
+    private final Map<T, Reservation<T>> reservationsByCar = new IdentityHashMap<>();
+    /**
+     * Reservations ordered by expiry, see {@link Parking#reserve(Object, LocalDateTime, Duration)}
+     */
+    private final ReservationQueue<T> reservations = new ReservationQueue<>();
     /**
      * The pricing policy used during {@link Parking#checkOut(Object)}
      */
     private PricingPolicy<T> pricingPolicy;
+    /**
+     * Optional classification of cars, see {@link ParkingBuilder#classifyBy(Function)}
+     */
+    private Function<? super T, ?> classifier;
+    /**
+     * Optional home zone of each car, see {@link ParkingBuilder#setZoneRouter(Function)}
+     */
+    private Function<? super T, String> zoneRouter;
+    /**
+     * Pools matching each kind of car, indexed by classification key
+     */
+    private final Map<Object, PoolSelection<T>> selections = new ConcurrentHashMap<>();
+    /**
+     * The time source used when no date time is provided, see {@link ParkingBuilder#setClock(Clock)}
+     */
+    private Clock clock = Clock.systemDefaultZone();
+    /**
+     * Gives the keys of the free slots, see {@link ParkingBuilder#setSlotSelectionStrategy(SlotSelectionStrategy)}
+     */
+    private SlotSelectionStrategy.Selector selector = SlotSelectionStrategy.FIRST_FREE().newSelector();
+    /**
+     * Guards the slots of a {@link Parking} (not used by {@link ConcurrentParking}): check ins and check outs take the
+     * write lock, queries read the pool counters optimistically
+     */
+    private final StampedLock lock = new StampedLock();
+    /**
+     * Guards the listeners, the event feed and the journal
+     */
+    private final ReentrantLock configuration = new ReentrantLock();
+    /**
+     * Listeners notified of each check in and check out (copy on write)
+     */
+    private volatile SlotListener<T>[] listeners = newListeners(0);
+    /**
+     * Optional journal of the parking, see {@link ParkingBuilder#setJournal(java.nio.file.Path, CarCodec)}
+     */
+    private volatile ParkingJournal<T> journal;
+    /**
+     * Created by the first {@link Parking#subscribe(Flow.Subscriber)}
+     */
+    private volatile EventFeed<T> feed;
+    /**
+     * Metrics of the parking, recorded only if {@link Parking#timed} (See {@link ParkingBuilder#setMetrics(boolean)})
+     */
+    private final ParkingMetrics<T> metrics = new ParkingMetrics<>(this);
+    private boolean timed = false;
 
     /**
      * Constructor, used from the Builder.
@@ -44,60 +147,466 @@ public class Parking<T> {
         this.pricingPolicy = pricingPolicy;
     }
 
+    PricingPolicy<T> getPricingPolicy() {
+        return pricingPolicy;
+    }
+
+    void setClassifier(Function<? super T, ?> classifier) {
+        this.classifier = classifier;
+    }
+
+    void setZoneRouter(Function<? super T, String> zoneRouter) {
+        this.zoneRouter = zoneRouter;
+    }
+
+    void setClock(Clock clock) {
+        this.clock = clock;
+    }
+
+    void setSlotSelectionStrategy(SlotSelectionStrategy strategy) {
+        this.selector = strategy.newSelector();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> SlotListener<T>[] newListeners(int size) {
+        return (SlotListener<T>[]) new SlotListener<?>[size];
+    }
+
+    /**
+     * @param listener the listener to notify of each check in and check out
+     */
+    void addListener(SlotListener<T> listener) {
+        configuration.lock();
+        try {
+            SlotListener<T>[] current = listeners;
+            SlotListener<T>[] updated = newListeners(current.length + 1);
+            System.arraycopy(current, 0, updated, 0, current.length);
+            updated[current.length] = listener;
+            listeners = updated;
+        } finally {
+            configuration.unlock();
+        }
+    }
+
+    /**
+     * @param slot the slot just allocated to a car
+     */
+    void fireCheckedIn(ParkingSlot<T> slot) {
+        SlotListener<T>[] current = listeners;
+        for (int i = 0; i < current.length; i++) current[i].checkedIn(slot);
+    }
+
+    /**
+     * @param slot  the slot describing the whole usage, before it is given back
+     * @param price the price of the usage, {@code null} if the pricing policy failed
+     */
+    void fireCheckedOut(ParkingSlot<T> slot, MonetaryAmount price) {
+        SlotListener<T>[] current = listeners;
+        for (int i = 0; i < current.length; i++) current[i].checkedOut(slot, price);
+    }
+
+    /**
+     * @param car the car no slot was found for
+     */
+    void fireRejected(T car) {
+        SlotListener<T>[] current = listeners;
+        for (int i = 0; i < current.length; i++) current[i].rejected(car);
+    }
+
+    /**
+     * Subscribe to the check ins, check outs and rejections of the parking, see {@link ParkingEvent}.
+     * Events are delivered asynchronously, in the order of the slot allocations, and only as requested by the
+     * subscriber (See {@link Flow.Subscription#request(long)}). The parking never waits for a subscriber: if its buffer
+     * (8192 events) is full, the next events are dropped for this subscriber.
+     * The subscription is completed by {@link Parking#close()}.
+     *
+     * @param subscriber the subscriber
+     */
+    public void subscribe(Flow.Subscriber<? super ParkingEvent<T>> subscriber) {
+        Objects.requireNonNull(subscriber);
+        configuration.lock();
+        try {
+            if (feed == null) {
+                feed = new EventFeed<>();
+                addListener(feed);
+            }
+            feed.subscribe(subscriber);
+        } finally {
+            configuration.unlock();
+        }
+    }
+
+    /**
+     * Record the metrics of the parking, used from the Builder.
+     */
+    void enableMetrics() {
+        timed = true;
+        addListener(metrics.counters());
+    }
+
+    /**
+     * Return the metrics of the parking: counters and latencies (if enabled, see {@link ParkingBuilder#setMetrics(boolean)})
+     * and occupancy of each slot policy.
+     *
+     * @return the metrics of the parking
+     */
+    public ParkingMetrics<T> getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return the start of a check in or check out, if the metrics are enabled
+     */
+    long startTimer() {
+        return timed ? System.nanoTime() : 0;
+    }
+
+    /**
+     * @param start the value returned by {@link Parking#startTimer()}
+     * @return the time the lock was acquired, if the metrics are enabled
+     */
+    long lockAcquired(long start) {
+        if (!timed) {
+            return 0;
+        }
+        long acquired = System.nanoTime();
+        metrics.getLockWait().record(acquired - start);
+        return acquired;
+    }
+
+    /**
+     * @param acquired the value returned by {@link Parking#lockAcquired(long)}
+     */
+    void served(long acquired) {
+        if (timed) {
+            metrics.getServiceTime().record(System.nanoTime() - acquired);
+        }
+    }
+
+    /**
+     * @return the pools of slots, in order of first appearance
+     */
+    List<SlotPool<T>> getPools() {
+        return pools;
+    }
+
+    /**
+     * @return the number of events dropped by the event feed
+     */
+    long getDroppedEventCount() {
+        EventFeed<T> current = feed;
+        return current == null ? 0 : current.getDroppedCount();
+    }
+
+    void setJournal(ParkingJournal<T> journal) {
+        this.journal = journal;
+        addListener(journal);
+    }
+
+    /**
+     * Called before each check in and check out, so that the parking doesn't change if it can't be journaled.
+     *
+     * @throws ParkingException if the journal (if any) failed or can't keep up (See {@link ParkingJournal#checkWritable()})
+     */
+    void checkJournal() {
+        ParkingJournal<T> current = journal;
+        if (current != null) {
+            current.checkWritable();
+        }
+    }
+
+    /**
+     * @return the slots indexed by id
+     * @throws ParkingException if two slots have the same id
+     */
+    Map<String, ParkingSlot<T>> indexSlotsById() {
+        Map<String, ParkingSlot<T>> slotsById = new HashMap<>();
+        for (ParkingSlot<T> slot : slots) {
+            if (slotsById.put(slot.getId(), slot) != null) {
+                throw new ParkingException("Slot " + slot.getId() + " defined twice !");
+            }
+        }
+        return slotsById;
+    }
+
+    /**
+     * Put back a car in its slot, used when the parking is restored (See {@link ParkingJournal}).
+     * {@link Parking#restored()} has to be called once all the cars are restored.
+     *
+     * @param slot               the free slot of the car
+     * @param car                the car
+     * @param incomingEpochNanos the arrival timestamp of the car (See {@link Timestamps})
+     * @param tier               the tier of the slot for the car (See {@link PredicateWithAlt#tierOf(Object)})
+     * @throws ParkingException if the car is already in the parking
+     */
+    void restore(ParkingSlot<T> slot, T car, long incomingEpochNanos, int tier) {
+        slot.occupy(car, incomingEpochNanos, tier);
+        index(car, slot);
+    }
+
+    /**
+     * Index the car restored in the slot.
+     *
+     * @param car  the car
+     * @param slot the slot of the car
+     * @throws ParkingException if the car is already in the parking
+     */
+    void index(T car, ParkingSlot<T> slot) {
+        if (slotsByCar.putIfAbsent(car, slot) != null) {
+            throw new ParkingException("Car " + car + " already checked in !");
+        }
+    }
+
+    /**
+     * Remove the restored slots from the free slots of their pool.
+     */
+    void restored() {
+        for (SlotPool<T> pool : pools) pool.removeOccupied();
+    }
+
+    /**
+     * @param car the car
+     * @return {@code true} if the car is checked in
+     */
+    boolean isCheckedIn(T car) {
+        long stamp = lock.readLock();
+        try {
+            return slotsByCar.containsKey(car);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @return copies of the occupied slots, in any order
+     */
+    List<ParkingSlot<T>> copyOccupiedSlots() {
+        long stamp = lock.readLock();
+        try {
+            List<ParkingSlot<T>> occupied = new ArrayList<>(slotsByCar.size());
+            for (ParkingSlot<T> slot : slotsByCar.values()) occupied.add(slot.copy());
+            return occupied;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Write a consistent snapshot of the occupied slots (slot id, car, incoming date time and alternative flag) in a
+     * compact binary format, to restore it using {@link ParkingBuilder#restore(java.nio.channels.ReadableByteChannel, CarCodec)}.
+     *
+     * @param channel the channel to write to (not closed)
+     * @param codec   the codec used to persist the cars
+     * @throws IOException if the snapshot can't be written
+     */
+    public void snapshot(WritableByteChannel channel, CarCodec<T> codec) throws IOException {
+        Objects.requireNonNull(channel);
+        Objects.requireNonNull(codec);
+        List<ParkingSlot<T>> occupied = copyOccupiedSlots();
+        occupied.sort(Comparator.comparingInt(ParkingSlot::getRank));
+        ParkingSnapshot.write(occupied, getSize(), codec, channel);
+    }
+
+    /**
+     * Same as {@link Parking#snapshot(WritableByteChannel, CarCodec)} using a stream.
+     *
+     * @param out   the stream to write to (not closed)
+     * @param codec the codec used to persist the cars
+     * @throws IOException if the snapshot can't be written
+     */
+    public void snapshot(OutputStream out, CarCodec<T> codec) throws IOException {
+        snapshot(Channels.newChannel(out), codec);
+        out.flush();
+    }
+
+    /**
+     * Write the pending records of the journal (if any, See {@link ParkingBuilder#setJournal(java.nio.file.Path, CarCodec)})
+     * and stop journaling, complete the subscriptions (See {@link Parking#subscribe(Flow.Subscriber)}).
+     * The parking should not be used anymore.
+     *
+     * @throws ParkingException if the journal could not be written
+     */
+    @Override
+    public void close() {
+        configuration.lock();
+        try {
+            if (feed != null) {
+                feed.close();
+            }
+            if (journal != null) {
+                journal.close();
+            }
+        } catch (IOException e) {
+            throw new ParkingException("Unable to write the journal !", e);
+        } finally {
+            configuration.unlock();
+        }
+    }
+
+    /**
+     * @return the current date time according to the clock of the parking
+     */
+    LocalDateTime now() {
+        return Timestamps.toLocalDateTime(Timestamps.now(clock));
+    }
+
+    /**
+     * @param car the car you want to classify
+     * @return the pools matching this kind of car, {@code null} if cars are not classified
+     */
+    PoolSelection<T> getSelection(T car) {
+        if (classifier == null) {
+            return null;
+        }
+        Object key = classifier.apply(car);
+        if (key == null) {
+            return null;
+        }
+        PoolSelection<T> selection = selections.get(key);
+        if (selection == null) {
+            selection = selections.computeIfAbsent(key, k -> new PoolSelection<>(pools, car));
+        }
+        return selection;
+    }
+
+    /**
+     * @param slot a slot of the parking
+     * @return the pool of the slot
+     */
+    SlotPool<T> getPool(ParkingSlot<T> slot) {
+        return slot.getPool();
+    }
+
     /**
-     * Add a new slot, providing id and policy
+     * Add a new slot to the default zone, providing id and policy
      *
      * @param id     the id for the parking slot
      * @param policy the policy that will be used for that slot
      */
     void addSlot(String id, PredicateWithAlt<T> policy) {
-        slots.add(new ParkingSlot<>(id, policy));
+        addSlot(id, policy, DEFAULT_ZONE);
     }
 
     /**
-     * Get the size of parking (total number of slots)
+     * Add a new slot, providing id, policy and zone
      *
-     * @return the size of the parking.
+     * @param id     the id for the parking slot
+     * @param policy the policy that will be used for that slot
+     * @param zone   the name of the zone of the slot
      */
-    public long getSize() {
-        return slots.size();
+    void addSlot(String id, PredicateWithAlt<T> policy, String zone) {
+        int index = zones.indexOf(zone);
+        if (index < 0) {
+            index = zones.size();
+            zones.add(zone);
+            poolsByZone.add(new IdentityHashMap<>());
+        }
+        int zoneIndex = index;
+        ParkingSlot<T> slot = new ParkingSlot<>(id, slots.size(), policy);
+        slots.add(slot);
+        poolsByZone.get(index).computeIfAbsent(policy, p -> {
+            SlotPool<T> pool = new SlotPool<>(p, zoneIndex, selector);
+            pools.add(pool);
+            return pool;
+        }).add(slot);
+    }
+
+    /**
+     * Return the names of the zones of the parking (See {@link ParkingBuilder#setZone(String)}), in order of first
+     * appearance.
+     *
+     * @return the names of the zones
+     */
+    public List<String> getZones() {
+        return Collections.unmodifiableList(zones);
     }
 
     /**
-     * @return {@link ParkingSlot} stream on free slots.
+     * The home zone of a car is the zone where it gets a slot if it has one of the lowest tier (See
+     * {@link Parking#findPool(Object, PoolSelection, int)}): the zone given by the router (See
+     * {@link ParkingBuilder#setZoneRouter(Function)}), or else a zone derived from the identity of the car, spreading
+     * the cars (and the contention on the pools of a {@link ConcurrentParking}) evenly over the zones. Compute it once
+     * per check in.
+     *
+     * @param car the car you want to check in
+     * @return the index of the home zone of this car
      */
-    private Stream<ParkingSlot<T>> getAllAvailable() {
-        return slots.stream().filter(ParkingSlot::isFree);
+    int homeZoneOf(T car) {
+        int nbrZones = zones.size();
+        if (nbrZones <= 1) {
+            return 0;
+        }
+        if (zoneRouter != null) {
+            int index = zones.indexOf(zoneRouter.apply(car));
+            if (index >= 0) {
+                return index;
+            }
+        }
+        // Cars are indexed by reference, their identity spreads them over the zones without any shared counter
+        int h = System.identityHashCode(car);
+        return Math.floorMod(h ^ (h >>> 16), nbrZones);
     }
 
     /**
-     * Return a stream containing all compatible slots see {@link PredicateWithAlt} for this car
+     * Get the size of parking (total number of slots)
      *
-     * @param car the car you want to test
-     * @return stream on free and compatible {@link ParkingSlot#testCompatible(T)}
+     * @return the size of the parking.
      */
-    private Stream<ParkingSlot<T>> getAvailableCompatibleFor(T car) {
-        return getAllAvailable().filter(s -> s.testCompatible(car));
+    public long getSize() {
+        return slots.size();
     }
 
     /**
-     * Return a stream containing all alternative slots see {@link PredicateWithAlt} for this car
+     * Count the slots of the pools whose policy matches this car, using the pool counters.
+     * If a classification is defined, the policies are only evaluated for the first car of each kind.
+     * The counters are read without lock, and read again under the read lock if a check in or check out was running
+     * (so that the count is consistent across pools).
      *
-     * @param car the car you want to test
-     * @return {@link ParkingSlot} stream on free and alternative slot for this car.
+     * @param car      the car you want to test
+     * @param match    the way the policy has to match the car (See {@link PredicateWithAlt})
+     * @param onlyFree {@code true} to count only free slots
+     * @return number of matching slots
      */
-    private Stream<ParkingSlot<T>> getAvailableAltFor(T car) {
-        return getAllAvailable().filter(s -> s.testAlt(car));
+    private long count(T car, Match match, boolean onlyFree) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            long count = countPools(car, match, onlyFree);
+            if (lock.validate(stamp)) {
+                return count;
+            }
+        }
+        // A check in or check out was running, wait for it
+        stamp = lock.readLock();
+        try {
+            return countPools(car, match, onlyFree);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private long countPools(T car, Match match, boolean onlyFree) {
+        PoolSelection<T> selection = getSelection(car);
+        if (selection != null) {
+            return selection.count(match, onlyFree);
+        }
+        long count = 0;
+        for (SlotPool<T> pool : pools) {
+            if (match.test(pool.getPolicy(), car)) {
+                count += onlyFree ? pool.getFreeCount() : pool.getSize();
+            }
+        }
+        return count;
     }
 
     /**
-     * Return a stream containing all preferred slots see {@link PredicateWithAlt} for this car
+     * Return the number of free slots of the parking, for any car (read from the pool counters without lock).
      *
-     * @param car the car you want to test
-     * @return stream on free and preferred slot {@link ParkingSlot} for this car.
+     * @return number of free slots
      */
-    private Stream<ParkingSlot<T>> getAvailableFor(T car) {
-        return getAllAvailable().filter(s -> s.test(car));
+    public long getAvailableSize() {
+        long count = 0;
+        for (SlotPool<T> pool : pools) count += pool.getFreeCount();
+        return count;
     }
 
     /**
@@ -107,7 +616,7 @@ public class Parking<T> {
      * @return number of compatible (preferred or alternative) slots for this car.
      */
     public long getSizeCompatibleFor(T car) {
-        return slots.stream().filter(s -> s.testCompatible(car)).count();
+        return count(car, Match.COMPATIBLE, false);
     }
 
     /**
@@ -117,7 +626,7 @@ public class Parking<T> {
      * @return number of alternative slots for this car.
      */
     public long getSizeAltFor(T car) {
-        return slots.stream().filter(s -> s.testAlt(car)).count();
+        return count(car, Match.ALTERNATIVE, false);
     }
 
     /**
@@ -127,7 +636,7 @@ public class Parking<T> {
      * @return number of preferred slots for this car.
      */
     public long getSizeFor(T car) {
-        return slots.stream().filter(s -> s.test(car)).count();
+        return count(car, Match.PREFERRED, false);
     }
 
     /**
@@ -137,7 +646,7 @@ public class Parking<T> {
      * @return number of free and compatible (preferred or alternative) slots for this car.
      */
     public long getAvailableSizeCompatibleFor(T car) {
-        return getAvailableCompatibleFor(car).count();
+        return count(car, Match.COMPATIBLE, true);
     }
 
     /**
@@ -147,7 +656,7 @@ public class Parking<T> {
      * @return number of free and alternative slots for this car.
      */
     public long getAvailableSizeAltFor(T car) {
-        return getAvailableAltFor(car).count();
+        return count(car, Match.ALTERNATIVE, true);
     }
 
     /**
@@ -157,37 +666,186 @@ public class Parking<T> {
      * @return number of free and preferred slots for this car.
      */
     public long getAvailableSizeFor(T car) {
-        return getAvailableFor(car).count();
+        return count(car, Match.PREFERRED, true);
     }
 
     /**
      * Allow you to check in a car.
-     * It will find the first free available preferred slot, or an alternative one if no preferred slot found.
+     * It will find the first free available preferred slot (See {@link SlotSelectionStrategy}), or an alternative one
+     * if no preferred slot found.
      * It will then return {@link CheckInResult} containing the corresponding allocated slot (copy)
      *
      * @param car              The car you want to check in.
      * @param incomingDateTime The incoming date and time.
      * @return {@link CheckInResult} containing the corresponding slot (or not containing any if no slot where found)
+     * @throws ParkingException if the car is already in the parking, or if the journal can't be written
+     * @throws IllegalArgumentException if the date time is out of the supported range ({@link Parking#MIN_DATE_TIME}
+     *                                  to {@link Parking#MAX_DATE_TIME})
+     */
+    public CheckInResult<T> checkIn(T car, LocalDateTime incomingDateTime) {
+        checkJournal();
+        long start = startTimer();
+        long stamp = lock.writeLock();
+        long acquired = lockAcquired(start);
+        try {
+            return doCheckIn(car, incomingDateTime);
+        } finally {
+            served(acquired);
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Check in a car, the caller holds the lock.
+     *
+     * @param car              The car you want to check in.
+     * @param incomingDateTime The incoming date and time.
+     * @return {@link CheckInResult} containing the corresponding slot (or not containing any if no slot where found)
      */
-    public synchronized CheckInResult<T> checkIn(T car, LocalDateTime incomingDateTime) {
+    private CheckInResult<T> doCheckIn(T car, LocalDateTime incomingDateTime) {
+        if (slotsByCar.containsKey(car)) {
+            throw new ParkingException("Car " + car + " already checked in !");
+        }
+        expireReservations(Timestamps.toEpochNanos(incomingDateTime));
         CheckInResult<T> result = new CheckInResult<>();
-        getAvailableFor(car).findFirst().ifPresentOrElse(
-                p -> result.setSlot(p.allocate(car, incomingDateTime, false)),
-                () -> getAvailableAltFor(car).findFirst().ifPresent(
-                        alt -> result.setSlot(alt.allocate(car, incomingDateTime, true))
-                )
-        );
+        ParkingSlot<T> slot = occupy(car, incomingDateTime);
+        if (slot != null) {
+            result.setSlot(slot.copy());
+        }
         return result;
     }
 
     /**
-     * Check in the car with {@link LocalDateTime#now()}
+     * Allow you to check in a car, without allocating any result (See {@link SlotHandle}).
+     * It will find the first free available preferred slot (See {@link SlotSelectionStrategy}), or an alternative one
+     * if no preferred slot found.
+     *
+     * @param car              The car you want to check in.
+     * @param incomingDateTime The incoming date and time.
+     * @param handle           The handle filled with the allocated slot (cleared if no slot where found).
+     * @return {@code true} if a slot was found
+     * @throws ParkingException if the car is already in the parking, or if the journal can't be written
+     * @throws IllegalArgumentException if the date time is out of the supported range ({@link Parking#MIN_DATE_TIME}
+     *                                  to {@link Parking#MAX_DATE_TIME})
+     */
+    public boolean checkIn(T car, LocalDateTime incomingDateTime, SlotHandle<T> handle) {
+        checkJournal();
+        long start = startTimer();
+        long stamp = lock.writeLock();
+        long acquired = lockAcquired(start);
+        try {
+            if (slotsByCar.containsKey(car)) {
+                throw new ParkingException("Car " + car + " already checked in !");
+            }
+            expireReservations(Timestamps.toEpochNanos(incomingDateTime));
+            ParkingSlot<T> slot = occupy(car, incomingDateTime);
+            if (slot == null) {
+                handle.clear();
+                return false;
+            }
+            handle.fill(slot, null);
+            return true;
+        } finally {
+            served(acquired);
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Allocate a slot to a car known not to be in the parking (its reserved slot if any), the caller holds the lock.
+     *
+     * @param car              The car you want to check in.
+     * @param incomingDateTime The incoming date and time.
+     * @return the allocated slot, {@code null} if no slot where found
+     */
+    private ParkingSlot<T> occupy(T car, LocalDateTime incomingDateTime) {
+        Reservation<T> reservation = reservationsByCar.remove(car);
+        if (reservation != null && reservation.claim()) {
+            ParkingSlot<T> slot = reservation.getSlot();
+            slot.occupy(car, incomingDateTime, reservation.getTier());
+            getPool(slot).reservationUsed();
+            slotsByCar.put(car, slot);
+            fireCheckedIn(slot);
+            return slot;
+        }
+        PoolSelection<T> selection = getSelection(car);
+        SlotPool<T> pool = findPool(car, selection, homeZoneOf(car));
+        if (pool != null) {
+            return allocate(pool, car, incomingDateTime, tierOf(car, selection, pool));
+        }
+        fireRejected(car);
+        return null;
+    }
+
+    /**
+     * Find the pool containing the best free slot for this car: the first free slot (See {@link SlotSelectionStrategy})
+     * of the lowest tier (See {@link PredicateWithAlt#tierOf(Object)}), in a single pass over the pools. Within a tier,
+     * the slots of the home zone of the car (See {@link Parking#homeZoneOf(Object)}) come first, the other zones
+     * are only used once it is full.
+     * Each policy is evaluated once, and only if its pool has a free slot that could be better than the one found
+     * (or only for the first car of each kind if a classification is defined).
+     *
+     * @param car       the car you want to test
+     * @param selection the pools matching this kind of car, {@code null} if cars are not classified
+     * @param home      the index of the home zone of the car (See {@link Parking#homeZoneOf(Object)})
+     * @return the pool having the best free matching slot, {@code null} if none
+     */
+    SlotPool<T> findPool(T car, PoolSelection<T> selection, int home) {
+        if (selection != null) {
+            return selection.findPool(home);
+        }
+        SlotPool<T> found = null;
+        int foundTier = PredicateWithAlt.NO_TIER;
+        for (int i = 0; i < pools.size(); i++) {
+            SlotPool<T> pool = pools.get(i);
+            if (!pool.hasFree() || foundTier == 0 && SlotPool.first(found, pool, home) == found) {
+                continue;
+            }
+            int tier = pool.getPolicy().tierOf(car);
+            if (tier >= 0 && (found == null || tier < foundTier || tier == foundTier && SlotPool.first(found, pool, home) == pool)) {
+                found = pool;
+                foundTier = tier;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * @param car       the car you want to test
+     * @param selection the pools matching this kind of car, {@code null} if cars are not classified
+     * @param pool      a pool of the parking
+     * @return the tier of the pool for this car, {@link PredicateWithAlt#NO_TIER} if it doesn't match
+     */
+    int tierOf(T car, PoolSelection<T> selection, SlotPool<T> pool) {
+        return selection != null ? selection.tierOf(pool) : pool.getPolicy().tierOf(car);
+    }
+
+    /**
+     * Allocate the first free slot of the pool to the car and index it.
+     *
+     * @param pool             the pool containing at least one free slot
+     * @param car              the car you want to put in
+     * @param incomingDateTime the arrival date time of the car
+     * @param tier             the tier of the pool for this car
+     * @return the allocated {@link ParkingSlot}
+     */
+    private ParkingSlot<T> allocate(SlotPool<T> pool, T car, LocalDateTime incomingDateTime, int tier) {
+        ParkingSlot<T> slot = pool.peekFree();
+        slot.occupy(car, incomingDateTime, tier);
+        pool.pollFree();
+        slotsByCar.put(car, slot);
+        fireCheckedIn(slot);
+        return slot;
+    }
+
+    /**
+     * Check in the car now, according to the clock of the parking (See {@link ParkingBuilder#setClock(Clock)})
      *
      * @param car The car you want to check in.
      * @return {@link CheckInResult} containing the corresponding slot (or not containing any if no slot where found)
      */
-    public synchronized CheckInResult<T> checkIn(T car) {
-        return checkIn(car, LocalDateTime.now());
+    public CheckInResult<T> checkIn(T car) {
+        return checkIn(car, now());
     }
 
     /**
@@ -198,21 +856,344 @@ public class Parking<T> {
      * @param car              The car you want to check in.
      * @param outgoingDateTime The outgoing date and time.
      * @return {@link CheckInResult} containing the corresponding slot and price.
+     * @throws ParkingException if the car is not in the parking, or if the journal can't be written
+     * @throws IllegalArgumentException if the date time is out of the supported range ({@link Parking#MIN_DATE_TIME}
+     *                                  to {@link Parking#MAX_DATE_TIME})
+     */
+    public CheckOutResult<T> checkOut(T car, LocalDateTime outgoingDateTime) {
+        checkJournal();
+        long start = startTimer();
+        long stamp = lock.writeLock();
+        long acquired = lockAcquired(start);
+        try {
+            ParkingSlot<T> slot = slotsByCar.get(car);
+            if (slot == null) {
+                throw new ParkingException("Car " + car + " not found !");
+            }
+            return doCheckOut(car, slot, outgoingDateTime);
+        } finally {
+            served(acquired);
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Check out a car from its slot, the caller holds the lock.
+     *
+     * @param car              The car you want to check out.
+     * @param slot             The slot allocated to this car.
+     * @param outgoingDateTime The outgoing date and time.
+     * @return {@link CheckOutResult} containing the corresponding slot and price.
+     */
+    private CheckOutResult<T> doCheckOut(T car, ParkingSlot<T> slot, LocalDateTime outgoingDateTime) {
+        ParkingSlot<T> usage = slot.free(outgoingDateTime);
+        MonetaryAmount price = null;
+        try {
+            price = pricingPolicy.computePrice(usage);
+            return new CheckOutResult<>(usage, price);
+        } finally {
+            fireCheckedOut(usage, price);
+            slotsByCar.remove(car);
+            getPool(slot).release(slot);
+        }
+    }
+
+    /**
+     * Allow you to check out a car, without allocating any result (See {@link SlotHandle}).
+     * The price is computed on the slot itself before it is freed.
+     *
+     * @param car              The car you want to check out.
+     * @param outgoingDateTime The outgoing date and time.
+     * @param handle           The handle filled with the freed slot and the price.
+     * @return the computed price
+     * @throws ParkingException if the car is not in the parking, or if the journal can't be written
+     * @throws IllegalArgumentException if the date time is out of the supported range ({@link Parking#MIN_DATE_TIME}
+     *                                  to {@link Parking#MAX_DATE_TIME})
      */
-    public synchronized CheckOutResult<T> checkOut(T car, LocalDateTime outgoingDateTime) {
-        ParkingSlot<T> usage = slots.stream().filter(s -> s.getCar() == car).findFirst().orElseThrow(
-                () -> new ParkingException("Car " + car + " not found !")).free(outgoingDateTime);
-        return new CheckOutResult<>(usage, pricingPolicy.computePrice(usage));
+    public MonetaryAmount checkOut(T car, LocalDateTime outgoingDateTime, SlotHandle<T> handle) {
+        checkJournal();
+        long start = startTimer();
+        long stamp = lock.writeLock();
+        long acquired = lockAcquired(start);
+        try {
+            ParkingSlot<T> slot = slotsByCar.get(car);
+            if (slot == null) {
+                throw new ParkingException("Car " + car + " not found !");
+            }
+            slot.leave(outgoingDateTime);
+            MonetaryAmount price = null;
+            try {
+                price = pricingPolicy.computePrice(slot);
+                handle.fill(slot, price);
+                return price;
+            } finally {
+                fireCheckedOut(slot, price);
+                slot.clear();
+                slotsByCar.remove(car);
+                getPool(slot).release(slot);
+            }
+        } finally {
+            served(acquired);
+            lock.unlockWrite(stamp);
+        }
     }
 
     /**
-     * Check out the car with {@link LocalDateTime#now()}
+     * Check out the car now, according to the clock of the parking (See {@link ParkingBuilder#setClock(Clock)})
      *
      * @param car The car you want to check in.
      * @return {@link CheckInResult} containing the corresponding slot (or not containing any if no slot where found)
      */
-    public synchronized CheckOutResult<T> checkOut(T car) {
-        return checkOut(car, LocalDateTime.now());
+    public CheckOutResult<T> checkOut(T car) {
+        return checkOut(car, now());
+    }
+
+    /**
+     * Allow you to check in a batch of cars (all arriving at the same date and time) taking the lock once.
+     * Cars get the same slots as if they were checked in one by one, in the iteration order of the collection.
+     * Nothing is checked in if one of the cars is already in the parking or appears twice.
+     *
+     * @param cars             The cars you want to check in.
+     * @param incomingDateTime The incoming date and time.
+     * @return {@link CheckInResult} for each car, in the same order
+     * @throws ParkingException if one of the cars is already in the parking or appears twice, or if the journal can't
+     *                          be written
+     * @throws IllegalArgumentException if the date time is out of the supported range ({@link Parking#MIN_DATE_TIME}
+     *                                  to {@link Parking#MAX_DATE_TIME})
+     */
+    public List<CheckInResult<T>> checkInAll(Collection<T> cars, LocalDateTime incomingDateTime) {
+        checkJournal();
+        long start = startTimer();
+        long stamp = lock.writeLock();
+        long acquired = lockAcquired(start);
+        try {
+            Set<T> batch = Collections.newSetFromMap(new IdentityHashMap<>(cars.size()));
+            for (T car : cars) {
+                if (slotsByCar.containsKey(car) || !batch.add(car)) {
+                    throw new ParkingException("Car " + car + " already checked in !");
+                }
+            }
+            expireReservations(Timestamps.toEpochNanos(incomingDateTime));
+            List<CheckInResult<T>> results = new ArrayList<>(cars.size());
+            for (T car : cars) {
+                CheckInResult<T> result = new CheckInResult<>();
+                ParkingSlot<T> slot = occupy(car, incomingDateTime);
+                if (slot != null) {
+                    result.setSlot(slot.copy());
+                }
+                results.add(result);
+            }
+            return results;
+        } finally {
+            served(acquired);
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Allow you to check out a batch of cars (all leaving at the same date and time) taking the lock once.
+     * Nothing is checked out if one of the cars is not in the parking, appears twice or arrived after the outgoing date.
+     *
+     * @param cars             The cars you want to check out.
+     * @param outgoingDateTime The outgoing date and time.
+     * @return {@link CheckOutResult} for each car, in the same order
+     * @throws ParkingException if one of the cars is not in the parking or appears twice, or if the journal can't
+     *                          be written
+     * @throws IllegalArgumentException if one of the cars arrived after outgoingDateTime
+     * @throws IllegalArgumentException if the date time is out of the supported range ({@link Parking#MIN_DATE_TIME}
+     *                                  to {@link Parking#MAX_DATE_TIME})
+     */
+    public List<CheckOutResult<T>> checkOutAll(Collection<T> cars, LocalDateTime outgoingDateTime) {
+        checkJournal();
+        long outgoingEpochNanos = Timestamps.toEpochNanos(Objects.requireNonNull(outgoingDateTime));
+        long start = startTimer();
+        long stamp = lock.writeLock();
+        long acquired = lockAcquired(start);
+        try {
+            Map<T, ParkingSlot<T>> batch = new IdentityHashMap<>(cars.size());
+            for (T car : cars) {
+                ParkingSlot<T> slot = slotsByCar.get(car);
+                if (slot == null || batch.put(car, slot) != null) {
+                    throw new ParkingException("Car " + car + " not found !");
+                }
+                if (slot.getIncomingEpochNanos() > outgoingEpochNanos) {
+                    throw new IllegalArgumentException("Outgoing date should be after incoming date !");
+                }
+            }
+            List<CheckOutResult<T>> results = new ArrayList<>(cars.size());
+            for (T car : cars) {
+                results.add(doCheckOut(car, batch.get(car), outgoingDateTime));
+            }
+            return results;
+        } finally {
+            served(acquired);
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Check in the cars one by one taking the lock once, used by {@link AsyncParking}. Unlike
+     * {@link Parking#checkInAll(Collection, LocalDateTime)}, each car is checked in, or fails, on its own.
+     *
+     * @param cars             The cars you want to check in.
+     * @param incomingDateTime The incoming date and time.
+     * @return for each car, in the same order, its {@link CheckInResult} or the exception it failed with
+     */
+    List<Object> checkInEach(List<T> cars, LocalDateTime incomingDateTime) {
+        List<Object> results = new ArrayList<>(cars.size());
+        long start = startTimer();
+        long stamp = lock.writeLock();
+        long acquired = lockAcquired(start);
+        try {
+            for (T car : cars) {
+                try {
+                    checkJournal();
+                    results.add(doCheckIn(car, incomingDateTime));
+                } catch (RuntimeException e) {
+                    results.add(e);
+                }
+            }
+            return results;
+        } finally {
+            served(acquired);
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Check out the cars one by one taking the lock once, used by {@link AsyncParking}. Unlike
+     * {@link Parking#checkOutAll(Collection, LocalDateTime)}, each car is checked out, or fails, on its own.
+     *
+     * @param cars             The cars you want to check out.
+     * @param outgoingDateTime The outgoing date and time.
+     * @return for each car, in the same order, its {@link CheckOutResult} or the exception it failed with
+     */
+    List<Object> checkOutEach(List<T> cars, LocalDateTime outgoingDateTime) {
+        List<Object> results = new ArrayList<>(cars.size());
+        long start = startTimer();
+        long stamp = lock.writeLock();
+        long acquired = lockAcquired(start);
+        try {
+            for (T car : cars) {
+                try {
+                    checkJournal();
+                    ParkingSlot<T> slot = slotsByCar.get(car);
+                    if (slot == null) {
+                        throw new ParkingException("Car " + car + " not found !");
+                    }
+                    results.add(doCheckOut(car, slot, outgoingDateTime));
+                } catch (RuntimeException e) {
+                    results.add(e);
+                }
+            }
+            return results;
+        } finally {
+            served(acquired);
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Hold a slot for a car expected to arrive: the first free slot of the lowest tier (the slot it would get at
+     * check in). The slot is not available anymore, but not occupied either (See {@link ParkingMetrics#getOccupancy()}):
+     * the car gets it at its next check in, unless the reservation expired before its incoming date time. Expired
+     * reservations are given back when a reservation or a check in happens after their expiry (See {@link ReservationQueue}).
+     * Reservations are neither journaled nor part of the snapshots.
+     *
+     * @param car                 The car you want to reserve a slot for.
+     * @param reservationDateTime The date and time of the reservation.
+     * @param holdFor             How long the slot is held.
+     * @return {@link ReservationResult} containing the id of the reserved slot (or not containing any if no slot where found)
+     * @throws ParkingException if the car is already in the parking or has already reserved a slot
+     * @throws IllegalArgumentException if holdFor is not positive
+     * @throws IllegalArgumentException if the date time is out of the supported range ({@link Parking#MIN_DATE_TIME}
+     *                                  to {@link Parking#MAX_DATE_TIME})
+     */
+    public ReservationResult reserve(T car, LocalDateTime reservationDateTime, Duration holdFor) {
+        long expiryEpochNanos = expiryOf(reservationDateTime, holdFor);
+        long stamp = lock.writeLock();
+        try {
+            long reservationEpochNanos = Timestamps.toEpochNanos(reservationDateTime);
+            expireReservations(reservationEpochNanos);
+            if (slotsByCar.containsKey(car) || reservationsByCar.containsKey(car)) {
+                throw new ParkingException("Car " + car + " already checked in or reserved !");
+            }
+            PoolSelection<T> selection = getSelection(car);
+            SlotPool<T> pool = findPool(car, selection, homeZoneOf(car));
+            if (pool == null) {
+                return new ReservationResult(null, null);
+            }
+            Reservation<T> reservation = new Reservation<>(car, pool.reserveFree(), tierOf(car, selection, pool),
+                    expiryEpochNanos);
+            reservationsByCar.put(car, reservation);
+            reservations.add(reservation);
+            return new ReservationResult(reservation.getSlot().getId(), Timestamps.toLocalDateTime(expiryEpochNanos));
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Reserve a slot now, according to the clock of the parking (See {@link ParkingBuilder#setClock(Clock)})
+     *
+     * @param car     The car you want to reserve a slot for.
+     * @param holdFor How long the slot is held.
+     * @return {@link ReservationResult} containing the id of the reserved slot (or not containing any if no slot where found)
+     */
+    public ReservationResult reserve(T car, Duration holdFor) {
+        return reserve(car, now(), holdFor);
+    }
+
+    /**
+     * Give back the slot reserved for a car (See {@link Parking#reserve(Object, LocalDateTime, Duration)}).
+     *
+     * @param car The car that reserved a slot.
+     * @return {@code true} if the car had a reservation (possibly expired but not yet given back)
+     */
+    public boolean cancelReservation(T car) {
+        long stamp = lock.writeLock();
+        try {
+            Reservation<T> reservation = reservationsByCar.remove(car);
+            if (reservation == null || !reservation.claim()) {
+                return false;
+            }
+            getPool(reservation.getSlot()).releaseReserved(reservation.getSlot());
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @return the expiry timestamp of a reservation (See {@link Timestamps})
+     */
+    static long expiryOf(LocalDateTime reservationDateTime, Duration holdFor) {
+        Objects.requireNonNull(reservationDateTime);
+        if (holdFor.isNegative() || holdFor.isZero()) {
+            throw new IllegalArgumentException("The reservation duration should be positive !");
+        }
+        return Timestamps.toEpochNanos(reservationDateTime) + holdFor.toNanos();
+    }
+
+    /**
+     * @return the reservations of the parking, ordered by expiry
+     */
+    ReservationQueue<T> getReservations() {
+        return reservations;
+    }
+
+    /**
+     * Give back the slots of the reservations expired at this timestamp, the caller holds the lock.
+     *
+     * @param epochNanos the current timestamp (See {@link Timestamps})
+     */
+    void expireReservations(long epochNanos) {
+        for (Reservation<T> reservation : reservations.pollExpired(epochNanos)) {
+            if (reservation.claim()) {
+                reservationsByCar.remove(reservation.getCar());
+                getPool(reservation.getSlot()).releaseReserved(reservation.getSlot());
+            }
+        }
     }
 
     /**
@@ -1,5 +1,18 @@
 package io.github.jeallasia.tplapi;
 
+import io.github.jeallasia.tplapi.exception.ParkingException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
 import java.util.function.Predicate;
 
 /**
@@ -8,11 +21,26 @@ import java.util.function.Predicate;
  */
 public class ParkingBuilder<T> {
 
-    private final Parking<T> instance;
+    private final List<String> slotIds = new ArrayList<>();
+    private final List<PredicateWithAlt<T>> slotPolicies = new ArrayList<>();
+    private final List<String> slotZones = new ArrayList<>();
+    private String zone = Parking.DEFAULT_ZONE;
+    private PricingPolicy<T> pricingPolicy;
+    private boolean concurrent = false;
+    private Function<? super T, ?> classifier;
+    private Function<? super T, String> zoneRouter;
+    private Clock clock = Clock.systemDefaultZone();
+    private SlotSelectionStrategy slotSelectionStrategy = SlotSelectionStrategy.FIRST_FREE();
+    private Path journalFile;
+    private CarCodec<T> carCodec;
+    private Duration flushInterval;
+    private int snapshotEvery;
+    private boolean metrics = false;
+    private ReadableByteChannel snapshot;
+    private CarCodec<T> snapshotCodec;
     private int cptAutoId = 0;
 
     ParkingBuilder() {
-        this.instance = new Parking<>();
     }
 
     private int nextId() {
@@ -27,7 +55,38 @@ public class ParkingBuilder<T> {
      * @return {@link ParkingBuilder} the builder
      */
     public ParkingBuilder<T> addSlot(String id, PredicateWithAlt<T> policy) {
-        this.instance.addSlot(id, policy);
+        Objects.requireNonNull(policy, "You have to specify at least one parking slot policy !");
+        this.slotIds.add(id);
+        this.slotPolicies.add(policy);
+        this.slotZones.add(zone);
+        return this;
+    }
+
+    /**
+     * Set the zone (like a floor) of the slots added next, by default {@link Parking#DEFAULT_ZONE}.
+     * Each car has a home zone (See {@link ParkingBuilder#setZoneRouter(Function)}, derived from the car by default)
+     * where it gets a slot as long as the zone has one of its lowest tier, it spills over to the other zones otherwise.
+     * The slots of each zone are pooled and locked apart, so that the check ins and check outs of a
+     * {@link ConcurrentParking} (See {@link ParkingBuilder#setConcurrent(boolean)}) in different zones don't contend.
+     * Zones don't reduce contention otherwise: a plain {@link Parking} locks all its zones together.
+     * @param zone the name of the zone
+     * @return {@link ParkingBuilder} the builder
+     */
+    public ParkingBuilder<T> setZone(String zone) {
+        this.zone = Objects.requireNonNull(zone, "You have to specify a zone !");
+        return this;
+    }
+
+    /**
+     * Route each car to its home zone (See {@link ParkingBuilder#setZone(String)}), like the floor near its gate.
+     * Cars routed to {@code null} or to an unknown zone, like all cars without router, get a zone derived from their
+     * identity (See {@link System#identityHashCode(Object)}): the cars are spread evenly, but not reproducibly from one
+     * run to the next.
+     * @param zoneRouter the function giving the name of the home zone of a car
+     * @return {@link ParkingBuilder} the builder
+     */
+    public ParkingBuilder<T> setZoneRouter(Function<? super T, String> zoneRouter) {
+        this.zoneRouter = zoneRouter;
         return this;
     }
 
@@ -129,16 +188,178 @@ public class ParkingBuilder<T> {
      * @return {@link ParkingBuilder} the builder
      */
     public ParkingBuilder<T> setPricingPolicy(PricingPolicy<T> pricingPolicy) {
-        this.instance.setPricingPolicy(pricingPolicy);
+        this.pricingPolicy = pricingPolicy;
+        return this;
+    }
+
+    /**
+     * Select the {@link ConcurrentParking} implementation, allowing concurrent check in and check out
+     * without locking the whole parking.
+     * @param concurrent {@code true} to build a {@link ConcurrentParking}
+     * @return {@link ParkingBuilder} the builder
+     */
+    public ParkingBuilder<T> setConcurrent(boolean concurrent) {
+        this.concurrent = concurrent;
+        return this;
+    }
+
+    /**
+     * Classify cars by a key (like their type), all cars with the same key must be accepted (or not) by the same
+     * slot policies. The parking will then evaluate the policies only for the first car of each kind, and reuse
+     * the result for the next ones during check in and size queries. Cars with a {@code null} key are not classified.
+     * @param classifier the function computing the key of a car
+     * @param <K> the type of the key
+     * @return {@link ParkingBuilder} the builder
+     */
+    public <K> ParkingBuilder<T> classifyBy(Function<? super T, K> classifier) {
+        this.classifier = classifier;
+        return this;
+    }
+
+    /**
+     * Set the time source used by {@link Parking#checkIn(Object)} and {@link Parking#checkOut(Object)}, by default
+     * {@link Clock#systemDefaultZone()}. Pass it to {@link ParkingSlot#computeDuration(Clock)} for a car still in.
+     * Use a {@link CoarseClock} for high-rate callers, or your own clock to run a simulation in virtual time.
+     * @param clock the clock to use
+     * @return {@link ParkingBuilder} the builder
+     */
+    public ParkingBuilder<T> setClock(Clock clock) {
+        this.clock = Objects.requireNonNull(clock, "You have to specify a clock !");
         return this;
     }
 
     /**
-     * The final step, that will validate (See {@link Parking#check()}) and return the {@link Parking}
+     * Set the way a car gets a slot among the free slots it can use, by default
+     * {@link SlotSelectionStrategy#FIRST_FREE()} (in the order the slots were added).
+     * @param strategy the strategy to use
+     * @return {@link ParkingBuilder} the builder
+     */
+    public ParkingBuilder<T> setSlotSelectionStrategy(SlotSelectionStrategy strategy) {
+        this.slotSelectionStrategy = Objects.requireNonNull(strategy, "You have to specify a slot selection strategy !");
+        return this;
+    }
+
+    /**
+     * Record the metrics of the {@link Parking} (See {@link Parking#getMetrics()}): counters of check ins,
+     * alternatives, rejections and check outs, and histograms of the lock wait and service time. Disabled by default,
+     * the parking then doesn't pay for them.
+     * @param metrics {@code true} to record the metrics
+     * @return {@link ParkingBuilder} the builder
+     */
+    public ParkingBuilder<T> setMetrics(boolean metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+    /**
+     * Journal the check ins and check outs in a file, so that the occupancy of the parking is restored from it when
+     * the parking is built again (after a crash or a restart). Records are written to the disk every 10 ms, see
+     * {@link ParkingBuilder#setJournal(Path, CarCodec, Duration, int)}. The journal is asynchronous, not a write-ahead
+     * log: check ins and check outs return before their record is on the disk, so a crash loses the operations
+     * acknowledged during the last 10 ms.
+     * Call {@link Parking#close()} to write the last records. If a write fails (or if the disk can't keep up), the
+     * next check ins and check outs throw a {@link ParkingException} without changing the parking.
+     * @param file the journal file, created if it doesn't exist
+     * @param codec the codec used to persist the cars
+     * @return {@link ParkingBuilder} the builder
+     */
+    public ParkingBuilder<T> setJournal(Path file, CarCodec<T> codec) {
+        return setJournal(file, codec, ParkingJournal.DEFAULT_FLUSH_INTERVAL, ParkingJournal.DEFAULT_SNAPSHOT_EVERY);
+    }
+
+    /**
+     * Journal the check ins and check outs in a file (See {@link ParkingBuilder#setJournal(Path, CarCodec)}).
+     * The records of each flush interval are written with a single synchronization to the disk, the journal is
+     * compacted to the cars still in the parking after snapshotEvery records (and when the parking is built).
+     * @param file the journal file, created if it doesn't exist
+     * @param codec the codec used to persist the cars
+     * @param flushInterval the interval between two writes, the acknowledged operations of a crashed parking are lost
+     *                      during it
+     * @param snapshotEvery the number of records after which the journal is compacted
+     * @return {@link ParkingBuilder} the builder
+     */
+    public ParkingBuilder<T> setJournal(Path file, CarCodec<T> codec, Duration flushInterval, int snapshotEvery) {
+        this.journalFile = Objects.requireNonNull(file, "You have to specify a journal file !");
+        this.carCodec = Objects.requireNonNull(codec, "You have to specify a car codec !");
+        if (flushInterval.isNegative() || flushInterval.isZero()) {
+            throw new IllegalArgumentException("The flush interval should be positive !");
+        }
+        if (snapshotEvery <= 0) {
+            throw new IllegalArgumentException("The number of records between two snapshots should be positive !");
+        }
+        this.flushInterval = flushInterval;
+        this.snapshotEvery = snapshotEvery;
+        return this;
+    }
+
+    /**
+     * Restore the occupied slots from a snapshot (See {@link Parking#snapshot(java.nio.channels.WritableByteChannel, CarCodec)})
+     * when the parking is built, the parking must have the same slots. The channel is read until its end, but not closed.
+     * @param channel the channel to read the snapshot from
+     * @param codec the codec used to persist the cars
+     * @return {@link ParkingBuilder} the builder
+     */
+    public ParkingBuilder<T> restore(ReadableByteChannel channel, CarCodec<T> codec) {
+        this.snapshot = Objects.requireNonNull(channel, "You have to specify a snapshot !");
+        this.snapshotCodec = Objects.requireNonNull(codec, "You have to specify a car codec !");
+        return this;
+    }
+
+    /**
+     * Same as {@link ParkingBuilder#restore(ReadableByteChannel, CarCodec)} using a stream.
+     * @param in the stream to read the snapshot from
+     * @param codec the codec used to persist the cars
+     * @return {@link ParkingBuilder} the builder
+     */
+    public ParkingBuilder<T> restore(InputStream in, CarCodec<T> codec) {
+        return restore(Channels.newChannel(Objects.requireNonNull(in, "You have to specify a snapshot !")), codec);
+    }
+
+    /**
+     * The final step, that will validate (See {@link Parking#check()}) and return the {@link Parking},
+     * restored from the snapshot or the journal if any
      * @return the corresponding {@link Parking}
      */
     public Parking<T> build() {
-        this.instance.check();
-        return this.instance;
+        return build(concurrent);
+    }
+
+    /**
+     * Same as {@link ParkingBuilder#build()} returning an {@link AsyncParking}, whose single writer thread owns a
+     * {@link Parking} (the concurrent implementation is not needed, see {@link ParkingBuilder#setConcurrent(boolean)}).
+     * @return the corresponding {@link AsyncParking}
+     */
+    public AsyncParking<T> buildAsync() {
+        return new AsyncParking<>(build(false));
+    }
+
+    private Parking<T> build(boolean concurrent) {
+        Parking<T> instance = concurrent ? new ConcurrentParking<>() : new Parking<>();
+        instance.setPricingPolicy(CompiledPricing.compile(pricingPolicy));
+        instance.setClassifier(classifier);
+        instance.setZoneRouter(zoneRouter);
+        instance.setClock(clock);
+        instance.setSlotSelectionStrategy(slotSelectionStrategy);
+        if (metrics) {
+            instance.enableMetrics();
+        }
+        for (int i = 0; i < slotIds.size(); i++) {
+            instance.addSlot(slotIds.get(i), slotPolicies.get(i), slotZones.get(i));
+        }
+        instance.check();
+        if (snapshot != null) {
+            if (journalFile != null) {
+                throw new ParkingException("A parking can't be restored both from a snapshot and a journal !");
+            }
+            try {
+                ParkingSnapshot.read(snapshot, snapshotCodec, instance);
+            } catch (IOException e) {
+                throw new ParkingException("Unable to read the snapshot !", e);
+            }
+        }
+        if (journalFile != null) {
+            ParkingJournal.open(journalFile, carCodec, flushInterval, snapshotEvery, instance);
+        }
+        return instance;
     }
 }
@@ -0,0 +1,80 @@
+package io.github.jeallasia.tplapi;
+
+import javax.money.MonetaryAmount;
+
+/**
+ * Event published to the subscribers of a {@link Parking} (See {@link Parking#subscribe(java.util.concurrent.Flow.Subscriber)}).
+ *
+ * @param <T> The Car class you want to use
+ */
+public final class ParkingEvent<T> {
+
+    /**
+     * The kind of event
+     */
+    public enum Type {
+        /**
+         * A car was checked in, see {@link CheckInResult}
+         */
+        CHECK_IN,
+        /**
+         * A car was checked out, see {@link CheckOutResult}
+         */
+        CHECK_OUT,
+        /**
+         * No slot was found for a car
+         */
+        REJECTED
+    }
+
+    private final Type type;
+    private final T car;
+    private final ParkingSlot<T> slot;
+    private final MonetaryAmount price;
+
+    /**
+     * Created by the parking
+     */
+    ParkingEvent(Type type, T car, ParkingSlot<T> slot, MonetaryAmount price) {
+        this.type = type;
+        this.car = car;
+        this.slot = slot;
+        this.price = price;
+    }
+
+    /**
+     * Return the kind of event
+     *
+     * @return the kind of event
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Return the car checked in, checked out or rejected
+     *
+     * @return the car
+     */
+    public T getCar() {
+        return car;
+    }
+
+    /**
+     * Return a copy of the slot allocated to the car (with the outgoing date time for a check out)
+     *
+     * @return a copy of the slot, {@code null} if the car was rejected
+     */
+    public ParkingSlot<T> getSlot() {
+        return slot;
+    }
+
+    /**
+     * Return the price of a check out, the one of its {@link CheckOutResult}
+     *
+     * @return the price, {@code null} if the car was not checked out (or if the pricing policy failed)
+     */
+    public MonetaryAmount getPrice() {
+        return price;
+    }
+}
@@ -0,0 +1,401 @@
+package io.github.jeallasia.tplapi;
+
+import io.github.jeallasia.tplapi.exception.ParkingException;
+
+import javax.money.MonetaryAmount;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of the check ins and check outs of a {@link Parking}
+ * (See {@link ParkingBuilder#setJournal(Path, CarCodec, Duration, int)}).
+ * Records are appended to a buffer in memory and written to the file with a single {@link FileChannel#force(boolean)}
+ * for all the records of a flush interval (group commit), from a daemon thread. The parking doesn't wait for the write:
+ * a crash loses the check ins and check outs of the last flush interval, already acknowledged to the callers.
+ * When the parking is built, the journal is replayed to restore the occupied slots, and then compacted (only the check
+ * in records of the cars still in are kept), the same compaction happens periodically so that the time to recover
+ * stays bounded.
+ * <p>
+ * File format: a header (magic number, version), then records made of their length, their CRC32 and their content:
+ * type (check in or check out), slot id, timestamp (See {@link Timestamps}), and for a check in, the tier of the slot
+ * (See {@link PredicateWithAlt#tierOf(Object)}, 1 for an alternative) and the car (See {@link CarCodec}). Replay stops at the first incomplete or corrupted record (a crash during a write).
+ * <p>
+ * Once a write failed, or if the records not written yet exceed {@link ParkingJournal#MAX_PENDING_BYTES} (the disk
+ * can't keep up), {@link ParkingJournal#checkWritable()} throws, so that the parking refuses the check ins and check
+ * outs it could not journal. A failed journal stops buffering records, it has to be closed and the parking built again.
+ *
+ * @param <T> the car class you want to use
+ */
+final class ParkingJournal<T> implements SlotListener<T>, Closeable {
+
+    static final Duration DEFAULT_FLUSH_INTERVAL = Duration.ofMillis(10);
+    static final int DEFAULT_SNAPSHOT_EVERY = 100_000;
+    /**
+     * Maximum size of the records not written yet, beyond it the check ins and check outs are refused
+     */
+    static final int MAX_PENDING_BYTES = 32 * 1024 * 1024;
+
+    /**
+     * Opens the channel the records are appended to
+     */
+    interface Opener {
+        FileChannel open(Path file) throws IOException;
+    }
+
+    private static final Opener APPEND = file -> FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+
+    private static final int MAGIC = 0x54504c4a;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    /**
+     * Length and CRC32 of a record
+     */
+    private static final int FRAME_SIZE = 8;
+    private static final byte CHECK_IN = 1;
+    private static final byte CHECK_OUT = 2;
+
+    private final Path file;
+    private final Opener opener;
+    private final CarCodec<T> codec;
+    private final int snapshotEvery;
+    private final ScheduledExecutorService flusher;
+    /**
+     * Only used by the flusher thread (and by close once it is stopped)
+     */
+    private FileChannel channel;
+    /**
+     * Records not written yet, guarded by the lock
+     */
+    private ByteBuffer pending = ByteBuffer.allocate(64 * 1024);
+    private ByteBuffer spare = ByteBuffer.allocate(64 * 1024);
+    /**
+     * Size of the records not written yet, readable without lock
+     */
+    private volatile int pendingBytes = 0;
+    /**
+     * Check in record of each occupied slot by slot id, guarded by the lock
+     */
+    private final Map<String, byte[]> live;
+    private int appendedSinceSnapshot = 0;
+    private volatile IOException failure;
+    /**
+     * Guards the records not written yet and the check in records
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private ParkingJournal(Path file, Opener opener, CarCodec<T> codec, int snapshotEvery, Map<String, byte[]> live,
+                           Duration flushInterval) throws IOException {
+        this.file = file;
+        this.opener = opener;
+        this.codec = codec;
+        this.snapshotEvery = snapshotEvery;
+        this.live = live;
+        this.channel = writeSnapshot(file, new ArrayList<>(live.values()), opener);
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "tplapi-journal");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = flushInterval.toNanos();
+        flusher.scheduleWithFixedDelay(this::flush, period, period, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Restore the occupied slots of the parking from the journal file (if any), compact it and start journaling.
+     *
+     * @param file          the journal file
+     * @param codec         the codec of the cars
+     * @param flushInterval the interval between two writes of the file
+     * @param snapshotEvery the number of records after which the journal is compacted
+     * @param parking       the parking just built
+     * @param <T>           the car class you want to use
+     * @return the journal, already listening to the parking
+     * @throws ParkingException if the journal can't be read or written, or doesn't match the parking
+     */
+    static <T> ParkingJournal<T> open(Path file, CarCodec<T> codec, Duration flushInterval, int snapshotEvery,
+                                      Parking<T> parking) {
+        return open(file, codec, flushInterval, snapshotEvery, parking, APPEND);
+    }
+
+    /**
+     * Same as {@link ParkingJournal#open(Path, CarCodec, Duration, int, Parking)} appending the records to the
+     * channels of the given opener.
+     */
+    static <T> ParkingJournal<T> open(Path file, CarCodec<T> codec, Duration flushInterval, int snapshotEvery,
+                                      Parking<T> parking, Opener opener) {
+        try {
+            Map<String, byte[]> live = replay(file);
+            Map<String, ParkingSlot<T>> slotsById = parking.indexSlotsById();
+            for (Map.Entry<String, byte[]> entry : live.entrySet()) {
+                ParkingSlot<T> slot = slotsById.get(entry.getKey());
+                if (slot == null) {
+                    throw new ParkingException("Slot " + entry.getKey() + " of the journal not found !");
+                }
+                ByteBuffer record = ByteBuffer.wrap(entry.getValue(), FRAME_SIZE, entry.getValue().length - FRAME_SIZE);
+                record.get();
+                skipString(record);
+                long incomingEpochNanos = record.getLong();
+                int tier = record.get();
+                byte[] car = new byte[record.getInt()];
+                record.get(car);
+                parking.restore(slot, codec.decode(car), incomingEpochNanos, tier);
+            }
+            parking.restored();
+            ParkingJournal<T> journal = new ParkingJournal<>(file, opener, codec, snapshotEvery, live, flushInterval);
+            parking.setJournal(journal);
+            return journal;
+        } catch (IOException e) {
+            throw new ParkingException("Unable to open the journal " + file + " !", e);
+        }
+    }
+
+    /**
+     * @param file the journal file
+     * @return the check in record of each occupied slot by slot id, in order of check in (the incomplete or
+     * corrupted tail of the file is ignored, and dropped by the compaction following the replay)
+     */
+    private static Map<String, byte[]> replay(Path file) throws IOException {
+        Map<String, byte[]> live = new LinkedHashMap<>();
+        if (!Files.exists(file)) {
+            return live;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            throw new ParkingException("The file " + file + " is not a parking journal !");
+        }
+        CRC32 crc = new CRC32();
+        while (buffer.remaining() >= FRAME_SIZE) {
+            int start = buffer.position();
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining()) break;
+            ByteBuffer content = buffer.slice();
+            content.limit(length);
+            crc.reset();
+            crc.update(content.duplicate());
+            if ((int) crc.getValue() != checksum) break;
+            byte type = content.get();
+            String slotId = getString(content);
+            if (type == CHECK_IN) {
+                byte[] record = new byte[FRAME_SIZE + length];
+                buffer.position(start);
+                buffer.get(record);
+                live.remove(slotId);
+                live.put(slotId, record);
+            } else {
+                live.remove(slotId);
+                buffer.position(start + FRAME_SIZE + length);
+            }
+        }
+        return live;
+    }
+
+    /**
+     * Write a new journal containing only the given records, replacing the current one atomically.
+     *
+     * @return a channel to append to the new journal
+     */
+    private static FileChannel writeSnapshot(Path file, List<byte[]> records, Opener opener) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION);
+            header.flip();
+            writeFully(channel, header);
+            for (byte[] record : records) writeFully(channel, ByteBuffer.wrap(record));
+            channel.force(false);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        FileChannel channel = opener.open(file);
+        try (FileChannel directory = FileChannel.open(parent, StandardOpenOption.READ)) {
+            directory.force(true);
+        } catch (IOException e) {
+            // Not supported on every platform
+        }
+        return channel;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) channel.write(buffer);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void skipString(ByteBuffer buffer) {
+        int length = buffer.getShort() & 0xFFFF;
+        buffer.position(buffer.position() + length);
+    }
+
+    private static byte[] record(byte type, String slotId, long epochNanos, int tier, byte[] car) {
+        byte[] id = slotId.getBytes(StandardCharsets.UTF_8);
+        int length = 1 + 2 + id.length + 8 + (type == CHECK_IN ? 1 + 4 + car.length : 0);
+        ByteBuffer buffer = ByteBuffer.allocate(FRAME_SIZE + length);
+        buffer.putInt(length).putInt(0).put(type).putShort((short) id.length).put(id).putLong(epochNanos);
+        if (type == CHECK_IN) {
+            buffer.put((byte) tier).putInt(car.length).put(car);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), FRAME_SIZE, length);
+        buffer.putInt(4, (int) crc.getValue());
+        return buffer.array();
+    }
+
+    /**
+     * Called before each check in and check out of the parking.
+     *
+     * @throws ParkingException if a write failed, or if the disk can't keep up with the records
+     */
+    void checkWritable() {
+        if (failure != null) {
+            throw new ParkingException("Unable to write the journal " + file + " !", failure);
+        }
+        if (pendingBytes > MAX_PENDING_BYTES) {
+            throw new ParkingException("The journal " + file + " can't keep up, more than " + MAX_PENDING_BYTES
+                    + " bytes are waiting to be written !");
+        }
+    }
+
+    @Override
+    public void checkedIn(ParkingSlot<T> slot) {
+        byte[] record = record(CHECK_IN, slot.getId(), slot.getIncomingEpochNanos(), slot.tier(),
+                codec.encode(slot.getCar()));
+        lock.lock();
+        try {
+            live.put(slot.getId(), record);
+            append(record);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void checkedOut(ParkingSlot<T> slot, MonetaryAmount price) {
+        byte[] record = record(CHECK_OUT, slot.getId(), slot.getOutgoingEpochNanos(), 0, null);
+        lock.lock();
+        try {
+            live.remove(slot.getId());
+            append(record);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void append(byte[] record) {
+        if (failure != null) {
+            // Broken, the parking refuses the next check ins and check outs
+            return;
+        }
+        if (pending.remaining() < record.length) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + record.length));
+            pending.flip();
+            larger.put(pending);
+            pending = larger;
+        }
+        pending.put(record);
+        pendingBytes = pending.position();
+        appendedSinceSnapshot++;
+    }
+
+    /**
+     * Write the pending records (or a snapshot if enough records were appended since the last one) and force them
+     * to the disk, called periodically by the flusher thread.
+     */
+    private void flush() {
+        if (failure != null) {
+            return;
+        }
+        ByteBuffer toWrite = null;
+        List<byte[]> snapshot = null;
+        lock.lock();
+        try {
+            if (appendedSinceSnapshot >= snapshotEvery && appendedSinceSnapshot >= 2 * live.size()) {
+                // The snapshot contains the effect of the pending records
+                snapshot = new ArrayList<>(live.values());
+                pending.clear();
+                appendedSinceSnapshot = 0;
+            } else if (pending.position() > 0) {
+                toWrite = pending;
+                pending = spare;
+                spare = null;
+            }
+            pendingBytes = pending.position();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            if (snapshot != null) {
+                FileChannel previous = channel;
+                channel = writeSnapshot(file, snapshot, opener);
+                previous.close();
+            } else if (toWrite != null) {
+                toWrite.flip();
+                writeFully(channel, toWrite);
+                channel.force(false);
+                toWrite.clear();
+                lock.lock();
+                try {
+                    spare = toWrite;
+                } finally {
+                    lock.unlock();
+                }
+            }
+        } catch (IOException e) {
+            failure = e;
+            lock.lock();
+            try {
+                pending = ByteBuffer.allocate(0);
+                pendingBytes = 0;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Write the pending records and stop journaling.
+     *
+     * @throws IOException if the journal could not be written
+     */
+    @Override
+    public void close() throws IOException {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        lock.lock();
+        try {
+            if (spare == null) spare = ByteBuffer.allocate(0);
+        } finally {
+            lock.unlock();
+        }
+        flush();
+        channel.close();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package io.github.jeallasia.tplapi;
+
+import javax.money.MonetaryAmount;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of a {@link Parking} (See {@link Parking#getMetrics()}).
+ * Counters and latencies are only recorded if they were enabled using {@link ParkingBuilder#setMetrics(boolean)},
+ * otherwise the parking doesn't pay for them and they stay at zero. The occupancy is always available.
+ *
+ * @param <T> the car class you want to use
+ */
+public final class ParkingMetrics<T> {
+
+    private final Parking<T> parking;
+    private final LongAdder checkIns = new LongAdder();
+    private final LongAdder alternatives = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+    private final LongAdder checkOuts = new LongAdder();
+    private final LatencyHistogram lockWait = new LatencyHistogram();
+    private final LatencyHistogram serviceTime = new LatencyHistogram();
+
+    /**
+     * Created with its parking
+     */
+    ParkingMetrics(Parking<T> parking) {
+        this.parking = parking;
+    }
+
+    /**
+     * @return the listener counting the check ins, check outs and rejections
+     */
+    SlotListener<T> counters() {
+        return new SlotListener<T>() {
+            @Override
+            public void checkedIn(ParkingSlot<T> slot) {
+                checkIns.increment();
+                if (slot.isUsingAlternative()) alternatives.increment();
+            }
+
+            @Override
+            public void checkedOut(ParkingSlot<T> slot, MonetaryAmount price) {
+                checkOuts.increment();
+            }
+
+            @Override
+            public void rejected(T car) {
+                rejections.increment();
+            }
+        };
+    }
+
+    /**
+     * Return the number of cars checked in (including alternatives)
+     *
+     * @return the number of cars checked in
+     */
+    public long getCheckInCount() {
+        return checkIns.sum();
+    }
+
+    /**
+     * Return the number of cars checked in to an alternative slot
+     *
+     * @return the number of cars checked in to an alternative slot
+     */
+    public long getAlternativeCount() {
+        return alternatives.sum();
+    }
+
+    /**
+     * Return the number of cars for which no slot was found (unsuccessful {@link CheckInResult})
+     *
+     * @return the number of rejected cars
+     */
+    public long getRejectedCount() {
+        return rejections.sum();
+    }
+
+    /**
+     * Return the number of cars checked out
+     *
+     * @return the number of cars checked out
+     */
+    public long getCheckOutCount() {
+        return checkOuts.sum();
+    }
+
+    /**
+     * Return the time spent waiting for the lock (of the parking, or of the car stripe for a {@link ConcurrentParking})
+     * by check ins and check outs. A batch taking the lock of the parking once (See
+     * {@link Parking#checkInAll(java.util.Collection, java.time.LocalDateTime)}, used by {@link AsyncParking}) is
+     * recorded as a single sample.
+     *
+     * @return the histogram of the lock waits
+     */
+    public LatencyHistogram getLockWait() {
+        return lockWait;
+    }
+
+    /**
+     * Return the time spent by check ins and check outs once the lock is taken, a single sample for a batch
+     *
+     * @return the histogram of the service times
+     */
+    public LatencyHistogram getServiceTime() {
+        return serviceTime;
+    }
+
+    /**
+     * Return the number of events dropped because a subscriber was too slow (See {@link Parking#subscribe(java.util.concurrent.Flow.Subscriber)})
+     *
+     * @return the number of dropped events
+     */
+    public long getDroppedEventCount() {
+        return parking.getDroppedEventCount();
+    }
+
+    /**
+     * Return the number of reserved slots (See {@link Parking#reserve(Object, java.time.LocalDateTime, java.time.Duration)})
+     *
+     * @return the number of slots held for a car, including expired reservations not yet given back
+     */
+    public long getReservedCount() {
+        long reserved = 0;
+        for (SlotPool<T> pool : parking.getPools()) reserved += pool.getReservedCount();
+        return reserved;
+    }
+
+    /**
+     * Return the number of occupied slots of each slot policy (instance), in order of first appearance
+     *
+     * @return the number of occupied slots by policy
+     */
+    public Map<PredicateWithAlt<T>, Integer> getOccupancy() {
+        List<SlotPool<T>> pools = parking.getPools();
+        Map<PredicateWithAlt<T>, Integer> occupancy = new LinkedHashMap<>();
+        for (SlotPool<T> pool : pools) occupancy.merge(pool.getPolicy(), pool.getOccupiedCount(), Integer::sum);
+        return occupancy;
+    }
+
+    /**
+     * Return the number of occupied slots of each zone (See {@link ParkingBuilder#setZone(String)}), in order of first
+     * appearance
+     *
+     * @return the number of occupied slots by zone
+     */
+    public Map<String, Integer> getOccupancyByZone() {
+        List<String> zones = parking.getZones();
+        Map<String, Integer> occupancy = new LinkedHashMap<>();
+        for (String zone : zones) occupancy.put(zone, 0);
+        for (SlotPool<T> pool : parking.getPools()) {
+            occupancy.merge(zones.get(pool.getZone()), pool.getOccupiedCount(), Integer::sum);
+        }
+        return occupancy;
+    }
+}
@@ -0,0 +1,307 @@
+package io.github.jeallasia.tplapi;
+
+import io.github.jeallasia.tplapi.exception.ParkingException;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+
+/**
+ * Several {@link Parking} (sites, like garages) behind a single entry point, built using {@link ParkingNetwork#builder()}.
+ * A check in is routed to the site offering the lowest tier to the car (See {@link PredicateWithAlt#tierOf(Object)}),
+ * and having the most free slots of this tier among them, ranked from the slot counters of the sites (read without
+ * taking their lock), and tried on the next site if the slots were taken meanwhile. Each car is indexed with its
+ * site, so that a check out only touches the site of the car, and a car can't be checked in twice across the network.
+ *
+ * @param <T> the car class you want to use
+ */
+public final class ParkingNetwork<T> {
+
+    /**
+     * A parking of the network and its name
+     */
+    private static final class Site<T> {
+        private final String name;
+        private final Parking<T> parking;
+
+        private Site(String name, Parking<T> parking) {
+            this.name = name;
+            this.parking = parking;
+        }
+    }
+
+    /**
+     * Site of a car being checked in
+     */
+    private static final Site<?> PENDING = new Site<>(null, null);
+
+    /**
+     * Key of the car index (reference equality, like the cars of a {@link Parking})
+     */
+    private static final class CarKey {
+        private final Object car;
+
+        private CarKey(Object car) {
+            this.car = Objects.requireNonNull(car);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof CarKey && ((CarKey) o).car == car;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(car);
+        }
+    }
+
+    private final Site<T>[] sites;
+    private final Map<String, Parking<T>> sitesByName;
+    private final Map<CarKey, Site<T>> sitesByCar = new ConcurrentHashMap<>();
+
+    /**
+     * Created by {@link ParkingNetworkBuilder#build()}
+     */
+    ParkingNetwork(Map<String, Parking<T>> parkings) {
+        this.sites = newSites(parkings.size());
+        int i = 0;
+        for (Map.Entry<String, Parking<T>> entry : parkings.entrySet()) {
+            sites[i++] = new Site<>(entry.getKey(), entry.getValue());
+        }
+        this.sitesByName = Collections.unmodifiableMap(new LinkedHashMap<>(parkings));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Site<T>[] newSites(int nbrSites) {
+        return (Site<T>[]) new Site<?>[nbrSites];
+    }
+
+    /**
+     * Create a new {@link ParkingNetworkBuilder} to define your network.
+     *
+     * @param <T> the car class you want to use
+     * @return the builder
+     */
+    public static <T> ParkingNetworkBuilder<T> builder() {
+        return new ParkingNetworkBuilder<>();
+    }
+
+    /**
+     * Return the sites of the network, by name in order of declaration.
+     * They are meant for queries: a car checked in directly on a site is not indexed by the network (it can't be
+     * checked out through the network), and a car checked out directly on its site stays indexed until it is next
+     * checked in or out through the network.
+     *
+     * @return the sites of the network
+     */
+    public Map<String, Parking<T>> getSites() {
+        return sitesByName;
+    }
+
+    /**
+     * Return the name of the site of a car.
+     *
+     * @param car the car
+     * @return the name of the site of the car, {@code null} if it is not in the network
+     */
+    public String getSiteOf(T car) {
+        Site<T> site = sitesByCar.get(new CarKey(car));
+        return site == null ? null : site.name;
+    }
+
+    /**
+     * Return the total number of slots of the network.
+     *
+     * @return the size of the network
+     */
+    public long getSize() {
+        long size = 0;
+        for (Site<T> site : sites) size += site.parking.getSize();
+        return size;
+    }
+
+    /**
+     * Return the number of free slots of the network, for any car (See {@link Parking#getAvailableSize()}).
+     *
+     * @return number of free slots
+     */
+    public long getAvailableSize() {
+        long count = 0;
+        for (Site<T> site : sites) count += site.parking.getAvailableSize();
+        return count;
+    }
+
+    /**
+     * Return the number of free and preferred slots for this car across the network (See {@link Parking#getAvailableSizeFor(Object)}).
+     *
+     * @param car The car you want to test
+     * @return number of free and preferred slots for this car
+     */
+    public long getAvailableSizeFor(T car) {
+        long count = 0;
+        for (Site<T> site : sites) count += site.parking.getAvailableSizeFor(car);
+        return count;
+    }
+
+    /**
+     * Return the number of free and compatible slots for this car across the network (See {@link Parking#getAvailableSizeCompatibleFor(Object)}).
+     *
+     * @param car The car you want to test
+     * @return number of free and compatible (preferred or alternative) slots for this car
+     */
+    public long getAvailableSizeCompatibleFor(T car) {
+        long count = 0;
+        for (Site<T> site : sites) count += site.parking.getAvailableSizeCompatibleFor(car);
+        return count;
+    }
+
+    /**
+     * Check in a car to the best site of the network (See {@link ParkingNetwork}), see {@link ParkingNetwork#getSiteOf(Object)}
+     * for the selected site.
+     *
+     * @param car              The car you want to check in.
+     * @param incomingDateTime The incoming date and time.
+     * @return {@link CheckInResult} containing the corresponding slot (or not containing any if no slot where found)
+     * @throws ParkingException if the car is already in the network
+     */
+    public CheckInResult<T> checkIn(T car, LocalDateTime incomingDateTime) {
+        Objects.requireNonNull(incomingDateTime);
+        return checkIn(car, (parking, c) -> parking.checkIn(c, incomingDateTime));
+    }
+
+    /**
+     * Check in the car now, according to the clock of the selected site (See {@link ParkingBuilder#setClock(java.time.Clock)})
+     *
+     * @param car The car you want to check in.
+     * @return {@link CheckInResult} containing the corresponding slot (or not containing any if no slot where found)
+     * @throws ParkingException if the car is already in the network
+     */
+    public CheckInResult<T> checkIn(T car) {
+        return checkIn(car, Parking::checkIn);
+    }
+
+    @SuppressWarnings("unchecked")
+    private CheckInResult<T> checkIn(T car, BiFunction<Parking<T>, T, CheckInResult<T>> checkIn) {
+        CarKey key = new CarKey(car);
+        // Reserves the car, a concurrent check in of the same car fails
+        Site<T> current = sitesByCar.putIfAbsent(key, (Site<T>) PENDING);
+        // A car checked out directly on its site is still indexed with it, it is reserved instead
+        if (current != null && (current == PENDING || current.parking.isCheckedIn(car)
+                || !sitesByCar.replace(key, current, (Site<T>) PENDING))) {
+            throw new ParkingException("Car " + car + " already checked in !");
+        }
+        boolean done = false;
+        try {
+            for (Site<T> site : route(car)) {
+                CheckInResult<T> result = checkIn.apply(site.parking, car);
+                if (result.isSuccessful()) {
+                    sitesByCar.put(key, site);
+                    done = true;
+                    return result;
+                }
+                // The slots were taken by a concurrent check in, try the next site
+            }
+            return new CheckInResult<>();
+        } finally {
+            if (!done) {
+                sitesByCar.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Rank the sites having a free slot for this car: the lowest tier first (See
+     * {@link PredicateWithAlt#tierOf(Object)}), then the most free slots of this tier. Each site is read in a single
+     * pass over the counters of its pools, without lock: a stale count only makes a site tried in vain, then the next
+     * one is tried.
+     *
+     * @param car the car you want to check in
+     * @return the sites to try, in order
+     */
+    private List<Site<T>> route(T car) {
+        Site<T>[] candidates = newSites(sites.length);
+        int[] tiers = new int[sites.length];
+        long[] available = new long[sites.length];
+        int nbrCandidates = 0;
+        for (Site<T> site : sites) {
+            Parking<T> parking = site.parking;
+            PoolSelection<T> selection = parking.getSelection(car);
+            int best = PredicateWithAlt.NO_TIER;
+            long free = 0;
+            for (SlotPool<T> pool : parking.getPools()) {
+                int count = pool.getFreeCount();
+                if (count == 0) continue;
+                int tier = parking.tierOf(car, selection, pool);
+                if (tier == PredicateWithAlt.NO_TIER || best != PredicateWithAlt.NO_TIER && tier > best) continue;
+                if (tier != best) {
+                    best = tier;
+                    free = 0;
+                }
+                free += count;
+            }
+            if (best == PredicateWithAlt.NO_TIER) continue;
+            // Insertion sort (stable), a network has a few sites
+            int i = nbrCandidates++;
+            while (i > 0 && (best < tiers[i - 1] || best == tiers[i - 1] && free > available[i - 1])) {
+                candidates[i] = candidates[i - 1];
+                tiers[i] = tiers[i - 1];
+                available[i] = available[i - 1];
+                i--;
+            }
+            candidates[i] = site;
+            tiers[i] = best;
+            available[i] = free;
+        }
+        return Arrays.asList(candidates).subList(0, nbrCandidates);
+    }
+
+    /**
+     * Check out a car from its site, only the site of the car is touched.
+     *
+     * @param car              The car you want to check out.
+     * @param outgoingDateTime The outgoing date and time.
+     * @return {@link CheckOutResult} containing the corresponding slot and price.
+     * @throws ParkingException if the car is not in the network
+     */
+    public CheckOutResult<T> checkOut(T car, LocalDateTime outgoingDateTime) {
+        Objects.requireNonNull(outgoingDateTime);
+        return checkOut(car, (parking, c) -> parking.checkOut(c, outgoingDateTime));
+    }
+
+    /**
+     * Check out the car now, according to the clock of its site (See {@link ParkingBuilder#setClock(java.time.Clock)})
+     *
+     * @param car The car you want to check out.
+     * @return {@link CheckOutResult} containing the corresponding slot and price.
+     * @throws ParkingException if the car is not in the network
+     */
+    public CheckOutResult<T> checkOut(T car) {
+        return checkOut(car, Parking::checkOut);
+    }
+
+    private CheckOutResult<T> checkOut(T car, BiFunction<Parking<T>, T, CheckOutResult<T>> checkOut) {
+        CarKey key = new CarKey(car);
+        Site<T> site = sitesByCar.get(key);
+        if (site == null || site == PENDING) {
+            throw new ParkingException("Car " + car + " not found !");
+        }
+        boolean done = false;
+        try {
+            CheckOutResult<T> result = checkOut.apply(site.parking, car);
+            done = true;
+            return result;
+        } finally {
+            // Also if the car left its site anyway (a failed pricing, or a check out made directly on the site)
+            if (done || !site.parking.isCheckedIn(car)) {
+                sitesByCar.remove(key, site);
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package io.github.jeallasia.tplapi;
+
+import io.github.jeallasia.tplapi.exception.ParkingException;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The builder associated with {@link ParkingNetwork}, used to declare the sites of the network.
+ *
+ * @param <T> the car class you want to use
+ */
+public class ParkingNetworkBuilder<T> {
+
+    private final Map<String, Parking<T>> sites = new LinkedHashMap<>();
+
+    /**
+     * Created by {@link ParkingNetwork#builder()}
+     */
+    ParkingNetworkBuilder() {
+    }
+
+    /**
+     * Add a site to the network, sites having as many free slots for a car are tried in order of declaration.
+     * The parking should then be used only through the network.
+     *
+     * @param name    the name of the site
+     * @param parking the parking of the site
+     * @return {@link ParkingNetworkBuilder} the builder
+     * @throws ParkingException if a site with the same name was already added
+     */
+    public ParkingNetworkBuilder<T> addSite(String name, Parking<T> parking) {
+        Objects.requireNonNull(name);
+        Objects.requireNonNull(parking);
+        if (sites.putIfAbsent(name, parking) != null) {
+            throw new ParkingException("Site " + name + " defined twice !");
+        }
+        return this;
+    }
+
+    /**
+     * The final step, that will validate and return the {@link ParkingNetwork}
+     *
+     * @return the corresponding {@link ParkingNetwork}
+     * @throws ParkingException if no site was added
+     */
+    public ParkingNetwork<T> build() {
+        if (sites.isEmpty()) {
+            throw new ParkingException("Your network does not contains any site, add some using addSite(...) !");
+        }
+        return new ParkingNetwork<>(sites);
+    }
+}
@@ -1,5 +1,6 @@
 package io.github.jeallasia.tplapi;
 
+import java.time.Clock;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.Objects;
@@ -11,11 +12,14 @@ import java.util.Objects;
 public final class ParkingSlot<T> implements Cloneable {
 
     private final String id;
+    private final int rank;
     private final PredicateWithAlt<T> policy;
     private T car;
-    private LocalDateTime incomingDateTime;
-    private Boolean usingAlternative;
-    private LocalDateTime outgoingDateTime;
+    private long incomingEpochNanos = Timestamps.NONE;
+    private int tier;
+    private long outgoingEpochNanos = Timestamps.NONE;
+    private long selectionKey;
+    private SlotPool<T> pool;
 
     /**
      * Constructor used to make a copy of current ParkingSlot to allow reporting
@@ -27,13 +31,29 @@ public final class ParkingSlot<T> implements Cloneable {
      * @param outgoingDateTime the outgoing date time of the car
      */
     ParkingSlot(final String id, final PredicateWithAlt<T> policy, T car, LocalDateTime incomingDateTime, Boolean usingAlternative, LocalDateTime outgoingDateTime) {
+        this(id, 0, policy, car, Timestamps.toEpochNanos(incomingDateTime),
+                Boolean.TRUE.equals(usingAlternative) ? 1 : 0, Timestamps.toEpochNanos(outgoingDateTime));
+    }
+
+    /**
+     * Constructor used to make a copy of current ParkingSlot to allow reporting
+     * @param id the indicative id of the ParkingSlot
+     * @param rank the position of the ParkingSlot in the {@link Parking}
+     * @param policy the allocation policy
+     * @param car the car in the slot
+     * @param incomingEpochNanos the incoming timestamp of that car (See {@link Timestamps})
+     * @param tier the tier of the slot for the car (See {@link PredicateWithAlt#tierOf(Object)})
+     * @param outgoingEpochNanos the outgoing timestamp of the car (See {@link Timestamps})
+     */
+    private ParkingSlot(final String id, final int rank, final PredicateWithAlt<T> policy, T car, long incomingEpochNanos, int tier, long outgoingEpochNanos) {
         Objects.requireNonNull(policy, "You have to specify at least one parking slot policy !");
         this.id = id;
+        this.rank = rank;
         this.policy = policy;
         this.car = car;
-        this.incomingDateTime = incomingDateTime;
-        this.usingAlternative = usingAlternative;
-        this.outgoingDateTime = outgoingDateTime;
+        this.incomingEpochNanos = incomingEpochNanos;
+        this.tier = tier;
+        this.outgoingEpochNanos = outgoingEpochNanos;
     }
 
     /**
@@ -42,8 +62,19 @@ public final class ParkingSlot<T> implements Cloneable {
      * @param policy the allocation policy
      */
     ParkingSlot(final String id, final PredicateWithAlt<T> policy) {
+        this(id, 0, policy);
+    }
+
+    /**
+     * Constructor used in {@link Parking}
+     * @param id the indicative id of the ParkingSlot
+     * @param rank the position of the ParkingSlot in the {@link Parking}
+     * @param policy the allocation policy
+     */
+    ParkingSlot(final String id, final int rank, final PredicateWithAlt<T> policy) {
         Objects.requireNonNull(policy, "You have to specify at least one parking slot policy !");
         this.id = id;
+        this.rank = rank;
         this.policy = policy;
     }
 
@@ -79,33 +110,71 @@ public final class ParkingSlot<T> implements Cloneable {
     }
 
     /**
-     * Compute {@link Duration} based on {@link ParkingSlot#incomingDateTime} and {@link ParkingSlot#outgoingDateTime}
+     * Compute {@link Duration} based on incoming and outgoing date time (now if the car is still in)
      * @return {@link Duration}
      */
     public Duration computeDuration() {
-        if (incomingDateTime == null) return Duration.ZERO;
-        LocalDateTime outgoingDateTime = this.outgoingDateTime;
-        if (outgoingDateTime == null) outgoingDateTime = LocalDateTime.now();
-        return Duration.between(incomingDateTime, outgoingDateTime);
+        return Duration.ofNanos(computeDurationNanos());
+    }
+
+    /**
+     * Same as {@link ParkingSlot#computeDuration()} reading now from the given clock if the car is still in
+     * (like the clock of the {@link Parking}, See {@link ParkingBuilder#setClock(Clock)})
+     * @param clock the clock to read if the car is still in
+     * @return {@link Duration}
+     */
+    public Duration computeDuration(Clock clock) {
+        Objects.requireNonNull(clock);
+        if (incomingEpochNanos == Timestamps.NONE) return Duration.ZERO;
+        long end = outgoingEpochNanos == Timestamps.NONE ? Timestamps.now(clock) : outgoingEpochNanos;
+        return Duration.ofNanos(end - incomingEpochNanos);
+    }
+
+    /**
+     * Same as {@link ParkingSlot#computeDuration()} without building a {@link Duration}
+     * @return the duration in nanoseconds
+     */
+    long computeDurationNanos() {
+        if (incomingEpochNanos == Timestamps.NONE) return 0;
+        return computeEndEpochNanos() - incomingEpochNanos;
+    }
+
+    /**
+     * @return the outgoing timestamp, now if the car is still in
+     */
+    long computeEndEpochNanos() {
+        return outgoingEpochNanos == Timestamps.NONE ? Timestamps.now(Clock.systemDefaultZone()) : outgoingEpochNanos;
     }
 
     /**
      * Used by {@link Parking#checkIn(Object)}.
-     * Basically allocate the slot to a car (providing incoming date time
-     * and if the slot was selected as an alternative or not)
+     * Basically put a car in the slot (providing incoming date time and the tier of the slot for this car)
      *
      * @param car the car you want to put in
      * @param incomingDateTime the arrival date time of the car
-     * @param usingAlternative {@code true} if the slot if made for this kind of car or is a valid alternative for this kind of car
-     * @return a copy of current {@link ParkingSlot} used for reporting
+     * @param tier the tier of the slot for this car (See {@link PredicateWithAlt#tierOf(Object)})
      */
-    ParkingSlot<T> allocate(T car, LocalDateTime incomingDateTime, boolean usingAlternative) {
+    void occupy(T car, LocalDateTime incomingDateTime, int tier) {
         Objects.requireNonNull(incomingDateTime);
+        occupy(car, Timestamps.toEpochNanos(incomingDateTime), tier);
+    }
+
+    /**
+     * Same as {@link ParkingSlot#occupy(Object, LocalDateTime, int)} using a timestamp.
+     *
+     * @param car the car you want to put in
+     * @param incomingEpochNanos the arrival timestamp of the car (See {@link Timestamps})
+     * @param tier the tier of the slot for this car (See {@link PredicateWithAlt#tierOf(Object)})
+     * @throws IllegalArgumentException if the tier is not between 0 and {@link PredicateWithAlt#MAX_TIER}
+     */
+    void occupy(T car, long incomingEpochNanos, int tier) {
         Objects.requireNonNull(car);
+        if (tier < 0 || tier > PredicateWithAlt.MAX_TIER) {
+            throw new IllegalArgumentException("Invalid tier " + tier + " !");
+        }
         this.car = car;
-        this.incomingDateTime = incomingDateTime;
-        this.usingAlternative = usingAlternative;
-        return new ParkingSlot<>(id, policy, car, incomingDateTime, usingAlternative, outgoingDateTime);
+        this.incomingEpochNanos = incomingEpochNanos;
+        this.tier = tier;
     }
 
     /**
@@ -117,15 +186,65 @@ public final class ParkingSlot<T> implements Cloneable {
      * @throws IllegalArgumentException if outgoingDateTime is after incomingDateTime
      */
     ParkingSlot<T> free(LocalDateTime outgoingDateTime) {
+        leave(outgoingDateTime);
+        ParkingSlot<T> result = copy();
+        clear();
+        return result;
+    }
+
+    /**
+     * First step of {@link ParkingSlot#free(LocalDateTime)}, set the outgoing date time so that the slot itself
+     * describes the whole usage (until {@link ParkingSlot#clear()}).
+     *
+     * @param outgoingDateTime the departure date time of the car
+     * @throws IllegalArgumentException if outgoingDateTime is after incomingDateTime
+     */
+    void leave(LocalDateTime outgoingDateTime) {
         Objects.requireNonNull(outgoingDateTime);
-        if (incomingDateTime.isAfter(outgoingDateTime)) {
+        leave(Timestamps.toEpochNanos(outgoingDateTime));
+    }
+
+    /**
+     * Same as {@link ParkingSlot#leave(LocalDateTime)} using a timestamp.
+     *
+     * @param outgoingEpochNanos the departure timestamp of the car (See {@link Timestamps})
+     * @throws IllegalArgumentException if outgoingDateTime is after incomingDateTime
+     */
+    void leave(long outgoingEpochNanos) {
+        if (incomingEpochNanos > outgoingEpochNanos) {
             throw new IllegalArgumentException("Outgoing date should be after incoming date !");
         }
-        ParkingSlot<T> result = new ParkingSlot<>(id, policy, car, incomingDateTime, usingAlternative, outgoingDateTime);
+        this.outgoingEpochNanos = outgoingEpochNanos;
+    }
+
+    /**
+     * Describe a stay without any car, used to price stays in bulk (See {@link BulkPricing}).
+     *
+     * @param incomingEpochNanos the arrival timestamp (See {@link Timestamps})
+     * @param outgoingEpochNanos the departure timestamp
+     */
+    void describe(long incomingEpochNanos, long outgoingEpochNanos) {
         this.car = null;
-        this.incomingDateTime = null;
-        this.usingAlternative = null;
-        return result;
+        this.incomingEpochNanos = incomingEpochNanos;
+        this.tier = 0;
+        this.outgoingEpochNanos = outgoingEpochNanos;
+    }
+
+    /**
+     * Last step of {@link ParkingSlot#free(LocalDateTime)}, the slot is free again.
+     */
+    void clear() {
+        this.car = null;
+        this.incomingEpochNanos = Timestamps.NONE;
+        this.tier = 0;
+        this.outgoingEpochNanos = Timestamps.NONE;
+    }
+
+    /**
+     * @return a copy of current {@link ParkingSlot} used for reporting
+     */
+    ParkingSlot<T> copy() {
+        return new ParkingSlot<>(id, rank, policy, car, incomingEpochNanos, tier, outgoingEpochNanos);
     }
 
     /**
@@ -135,6 +254,35 @@ public final class ParkingSlot<T> implements Cloneable {
         return id;
     }
 
+    /**
+     * @return the position of the parking slot in the {@link Parking}
+     */
+    int getRank() {
+        return rank;
+    }
+
+    /**
+     * @return the key of the slot while it is free (See {@link SlotSelectionStrategy})
+     */
+    long getSelectionKey() {
+        return selectionKey;
+    }
+
+    void setSelectionKey(long selectionKey) {
+        this.selectionKey = selectionKey;
+    }
+
+    /**
+     * @return the pool of the slot in the {@link Parking}, {@code null} for a copy
+     */
+    SlotPool<T> getPool() {
+        return pool;
+    }
+
+    void setPool(SlotPool<T> pool) {
+        this.pool = pool;
+    }
+
     /**
      * @return the allocation policy
      */
@@ -153,21 +301,56 @@ public final class ParkingSlot<T> implements Cloneable {
      * @return the car incoming date time
      */
     public LocalDateTime getIncomingDateTime() {
-        return incomingDateTime;
+        return Timestamps.toLocalDateTime(incomingEpochNanos);
+    }
+
+    /**
+     * @return the car incoming timestamp (See {@link Timestamps})
+     */
+    long getIncomingEpochNanos() {
+        return incomingEpochNanos;
     }
 
     /**
      * @return {@code true} if the slot was selected as an alternative for this car
      */
     public Boolean getUsingAlternative() {
-        return usingAlternative;
+        return incomingEpochNanos == Timestamps.NONE ? null : tier > 0;
+    }
+
+    /**
+     * @return {@code true} if the slot was selected as an alternative for this car
+     */
+    boolean isUsingAlternative() {
+        return tier > 0;
+    }
+
+    /**
+     * @return the tier of the slot for this car, 0 for a preferred slot (See {@link PredicateWithAlt#tierOf(Object)})
+     */
+    public Integer getTier() {
+        return incomingEpochNanos == Timestamps.NONE ? null : tier;
+    }
+
+    /**
+     * @return the tier of the slot for this car
+     */
+    int tier() {
+        return tier;
     }
 
     /**
      * @return the car outgoing date time
      */
     public LocalDateTime getOutgoingDateTime() {
-        return outgoingDateTime;
+        return Timestamps.toLocalDateTime(outgoingEpochNanos);
+    }
+
+    /**
+     * @return the car outgoing timestamp (See {@link Timestamps})
+     */
+    long getOutgoingEpochNanos() {
+        return outgoingEpochNanos;
     }
 
 }
\ No newline at end of file
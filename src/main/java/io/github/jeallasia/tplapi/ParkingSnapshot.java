@@ -0,0 +1,135 @@
+package io.github.jeallasia.tplapi;
+
+import io.github.jeallasia.tplapi.exception.ParkingException;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary snapshot of the occupied slots of a {@link Parking} (See {@link Parking#snapshot(WritableByteChannel, CarCodec)}
+ * and {@link ParkingBuilder#restore(ReadableByteChannel, CarCodec)}).
+ * <p>
+ * Format: a header (magic number, version, number of slots of the parking, number of occupied slots), then one column
+ * per field of the occupied slots, in order of rank: slot ids, incoming timestamps (See {@link Timestamps}),
+ * tiers (one byte per slot, See {@link PredicateWithAlt#tierOf(Object)}) and cars (See {@link CarCodec}). Strings and
+ * cars are prefixed by their length. Snapshots of version 1 (alternative flags, one bit per slot, instead of the tiers)
+ * can still be read.
+ */
+final class ParkingSnapshot {
+
+    private static final int MAGIC = 0x54504c53;
+    private static final int VERSION = 2;
+    private static final int VERSION_ALTERNATIVE_FLAGS = 1;
+    private static final int HEADER_SIZE = 16;
+
+    private ParkingSnapshot() {
+    }
+
+    /**
+     * @param slots   copies of the occupied slots, in order of rank
+     * @param size    the number of slots of the parking
+     * @param codec   the codec of the cars
+     * @param channel the channel to write to
+     * @param <T>     the car class you want to use
+     * @throws IOException      if the snapshot can't be written
+     * @throws ParkingException if the snapshot is too large or an id of slot is longer than 65535 bytes in UTF-8
+     */
+    static <T> void write(List<ParkingSlot<T>> slots, long size, CarCodec<T> codec, WritableByteChannel channel)
+            throws IOException {
+        int nbrSlots = slots.size();
+        byte[][] ids = new byte[nbrSlots][];
+        byte[][] cars = new byte[nbrSlots][];
+        long length = HEADER_SIZE + 9L * nbrSlots;
+        for (int i = 0; i < nbrSlots; i++) {
+            ids[i] = slots.get(i).getId().getBytes(StandardCharsets.UTF_8);
+            if (ids[i].length > 0xFFFF) {
+                throw new ParkingException("The id of a slot is too long for the snapshot (more than 65535 bytes) !");
+            }
+            cars[i] = codec.encode(slots.get(i).getCar());
+            length += 2 + ids[i].length + 4 + cars[i].length;
+        }
+        if (length > Integer.MAX_VALUE) {
+            throw new ParkingException("The snapshot is too large !");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) length);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt((int) size).putInt(nbrSlots);
+        for (byte[] id : ids) buffer.putShort((short) id.length).put(id);
+        for (ParkingSlot<T> slot : slots) buffer.putLong(slot.getIncomingEpochNanos());
+        for (ParkingSlot<T> slot : slots) buffer.put((byte) slot.tier());
+        for (byte[] car : cars) buffer.putInt(car.length).put(car);
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+    }
+
+    /**
+     * Put back the cars of the snapshot in the parking just built.
+     *
+     * @param channel the channel to read from, until its end
+     * @param codec   the codec of the cars
+     * @param parking the parking
+     * @param <T>     the car class you want to use
+     * @throws IOException      if the snapshot can't be read
+     * @throws ParkingException if the snapshot is invalid or doesn't match the parking
+     */
+    static <T> void read(ReadableByteChannel channel, CarCodec<T> codec, Parking<T> parking) throws IOException {
+        ByteBuffer buffer = readFully(channel);
+        try {
+            int version = buffer.getInt() == MAGIC ? buffer.getInt() : -1;
+            if (version != VERSION && version != VERSION_ALTERNATIVE_FLAGS) {
+                throw new ParkingException("Not a parking snapshot !");
+            }
+            boolean alternativeFlags = version == VERSION_ALTERNATIVE_FLAGS;
+            if (buffer.getInt() != parking.getSize()) {
+                throw new ParkingException("The snapshot doesn't match the size of the parking !");
+            }
+            int nbrSlots = buffer.getInt();
+            Map<String, ParkingSlot<T>> slotsById = parking.indexSlotsById();
+            ParkingSlot<T>[] slots = newSlots(nbrSlots);
+            for (int i = 0; i < nbrSlots; i++) {
+                byte[] id = new byte[buffer.getShort() & 0xFFFF];
+                buffer.get(id);
+                String slotId = new String(id, StandardCharsets.UTF_8);
+                slots[i] = slotsById.get(slotId);
+                if (slots[i] == null || !slots[i].isFree()) {
+                    throw new ParkingException("Slot " + slotId + " of the snapshot not found !");
+                }
+            }
+            int incomings = buffer.position();
+            int tiers = incomings + 8 * nbrSlots;
+            buffer.position(tiers + (alternativeFlags ? (nbrSlots + 7) / 8 : nbrSlots));
+            for (int i = 0; i < nbrSlots; i++) {
+                byte[] car = new byte[buffer.getInt()];
+                buffer.get(car);
+                int tier = alternativeFlags ? (buffer.get(tiers + i / 8) >> (i & 7)) & 1 : buffer.get(tiers + i);
+                parking.restore(slots[i], codec.decode(car), buffer.getLong(incomings + 8 * i), tier);
+            }
+        } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new ParkingException("The snapshot is truncated !", e);
+        }
+        parking.restored();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> ParkingSlot<T>[] newSlots(int nbrSlots) {
+        return (ParkingSlot<T>[]) new ParkingSlot<?>[nbrSlots];
+    }
+
+    private static ByteBuffer readFully(ReadableByteChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        while (channel.read(buffer) >= 0) {
+            if (!buffer.hasRemaining()) {
+                ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+                buffer.flip();
+                buffer = larger.put(buffer);
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
@@ -0,0 +1,54 @@
+package io.github.jeallasia.tplapi;
+
+import javax.money.MonetaryAmount;
+import java.util.function.LongBinaryOperator;
+
+/**
+ * {@link PricingPolicy#PER_HOUR(MonetaryAmount, boolean)}, kept as a class so that it can be compiled
+ * (See {@link CompiledPricing})
+ *
+ * @param <T> the car class you want to use
+ */
+final class PerHourPricing<T> implements PricingPolicy<T>, UnitPricing {
+
+    private final MonetaryAmount pricePerHour;
+    private final boolean countHourStarted;
+
+    PerHourPricing(MonetaryAmount pricePerHour, boolean countHourStarted) {
+        this.pricePerHour = pricePerHour;
+        this.countHourStarted = countHourStarted;
+    }
+
+    MonetaryAmount getPricePerHour() {
+        return pricePerHour;
+    }
+
+    boolean isCountHourStarted() {
+        return countHourStarted;
+    }
+
+    @Override
+    public LongBinaryOperator unitsAt(int scale) {
+        long units = MinorUnits.toUnits(pricePerHour, scale);
+        return (incomingEpochNanos, outgoingEpochNanos) ->
+                Math.multiplyExact(countHours(outgoingEpochNanos - incomingEpochNanos, countHourStarted), units);
+    }
+
+    @Override
+    public MonetaryAmount computePrice(ParkingSlot<T> slot) {
+        return PricingPolicy.computePerHour(slot.computeDurationNanos(), pricePerHour, countHourStarted);
+    }
+
+    /**
+     * @param durationNanos    the duration in nanoseconds
+     * @param countHourStarted if true, count hour started (only hour finished if false)
+     * @return the number of hours to pay
+     */
+    static long countHours(long durationNanos, boolean countHourStarted) {
+        long hours = durationNanos / Timestamps.NANOS_PER_HOUR;
+        if (countHourStarted && durationNanos % Timestamps.NANOS_PER_HOUR != 0) {
+            hours++;
+        }
+        return hours;
+    }
+}
@@ -0,0 +1,113 @@
+package io.github.jeallasia.tplapi;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The pools of a {@link Parking} matching a kind of car, computed once per classification key
+ * (See {@link ParkingBuilder#classifyBy(java.util.function.Function)}) so that the policies are not evaluated again
+ * for the next cars of the same kind.
+ *
+ * @param <T> the car class you want to use
+ */
+final class PoolSelection<T> {
+
+    /**
+     * The way a {@link PredicateWithAlt} can match a car
+     */
+    enum Match {
+        PREFERRED, ALTERNATIVE, COMPATIBLE;
+
+        <T> boolean test(PredicateWithAlt<T> policy, T car) {
+            switch (this) {
+                case PREFERRED:
+                    return policy.test(car);
+                case ALTERNATIVE:
+                    return policy.testAlt(car);
+                default:
+                    return policy.testCompatible(car);
+            }
+        }
+    }
+
+    private final List<List<SlotPool<T>>> pools = new ArrayList<>();
+    /**
+     * Matching pools grouped by tier (See {@link PredicateWithAlt#tierOf(Object)}), the preferred ones first
+     */
+    private final List<List<SlotPool<T>>> tiers = new ArrayList<>();
+    private final Map<SlotPool<T>, Integer> tierOfPool = new IdentityHashMap<>();
+
+    /**
+     * Evaluate all the policies for this car.
+     *
+     * @param allPools all the pools of the parking
+     * @param car      a car representative of its classification key
+     */
+    PoolSelection(List<SlotPool<T>> allPools, T car) {
+        for (Match match : Match.values()) {
+            List<SlotPool<T>> matching = new ArrayList<>();
+            for (SlotPool<T> pool : allPools) {
+                if (match.test(pool.getPolicy(), car)) matching.add(pool);
+            }
+            pools.add(matching);
+        }
+        for (SlotPool<T> pool : allPools) {
+            int tier = pool.getPolicy().tierOf(car);
+            if (tier < 0) continue;
+            while (tiers.size() <= tier) tiers.add(new ArrayList<>());
+            tiers.get(tier).add(pool);
+            tierOfPool.put(pool, tier);
+        }
+    }
+
+    /**
+     * @param match the way pools have to match
+     * @return the matching pools
+     */
+    List<SlotPool<T>> getPools(Match match) {
+        return pools.get(match.ordinal());
+    }
+
+    /**
+     * @param home the index of the home zone of the car (See {@link Parking#homeZoneOf(Object)})
+     * @return the matching pool of the lowest tier having the first free slot, in the home zone if possible,
+     * {@code null} if none
+     */
+    SlotPool<T> findPool(int home) {
+        for (int tier = 0; tier < tiers.size(); tier++) {
+            List<SlotPool<T>> matching = tiers.get(tier);
+            SlotPool<T> found = null;
+            for (int i = 0; i < matching.size(); i++) {
+                SlotPool<T> pool = matching.get(i);
+                if (pool.hasFree()) found = SlotPool.first(found, pool, home);
+            }
+            if (found != null) {
+                return found;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param pool a pool of the parking
+     * @return the tier of the pool for this kind of car, {@link PredicateWithAlt#NO_TIER} if it doesn't match
+     */
+    int tierOf(SlotPool<T> pool) {
+        return tierOfPool.getOrDefault(pool, PredicateWithAlt.NO_TIER);
+    }
+
+    /**
+     * @param match    the way pools have to match
+     * @param onlyFree {@code true} to count only free slots
+     * @return the number of slots in matching pools
+     */
+    long count(Match match, boolean onlyFree) {
+        long count = 0;
+        for (SlotPool<T> pool : getPools(match)) {
+            count += onlyFree ? pool.getFreeCount() : pool.getSize();
+        }
+        return count;
+    }
+}
@@ -1,17 +1,28 @@
 package io.github.jeallasia.tplapi;
 
+import java.util.List;
 import java.util.Objects;
 import java.util.function.Predicate;
 
 /**
  * Classic {@link Predicate} with an alternative test, this allows {@link Parking} to select {@link ParkingSlot}
  * using first {@link PredicateWithAlt#test(Object)} and if not found to use {@link PredicateWithAlt#testAlt(Object)}
- * to find a potential alternative slot.
+ * to find a potential alternative slot. Use a {@link RankedPredicate} for more than one level of alternative.
  *
  * @param <T> the type of the input to the predicate (The car class you are using)
  */
 public interface PredicateWithAlt<T> extends Predicate<T> {
 
+    /**
+     * Value of {@link PredicateWithAlt#tierOf(Object)} when the slot doesn't match the car
+     */
+    int NO_TIER = -1;
+
+    /**
+     * The highest tier of a slot
+     */
+    int MAX_TIER = 127;
+
     /**
      * Evaluates the alternative predicate on the given argument.
      *
@@ -34,6 +45,18 @@ public interface PredicateWithAlt<T> extends Predicate<T> {
         return test(t) || testAlt(t);
     }
 
+    /**
+     * Evaluates the rank of the slot for the given argument: 0 if it matches the predicate (See {@link Predicate#test}),
+     * 1 if it matches the alternative predicate, {@link PredicateWithAlt#NO_TIER} otherwise.
+     * {@link Parking#checkIn(Object)} takes a slot of the lowest tier.
+     *
+     * @param t the input argument
+     * @return the tier of the slot for the input argument, {@link PredicateWithAlt#NO_TIER} if it doesn't match
+     */
+    default int tierOf(T t) {
+        return test(t) ? 0 : testAlt(t) ? 1 : NO_TIER;
+    }
+
     /**
      * Used to build a PredicateWithAlt (without any alternative predicate) from a classic Predicate
      * @param main the main predicate
@@ -68,4 +91,46 @@ public interface PredicateWithAlt<T> extends Predicate<T> {
         };
     }
 
+    /**
+     * Used to build a {@link RankedPredicate} from classic Predicates, in order of preference
+     * @param tiers the predicate of each tier, the first one is the preferred one
+     * @param <T> the type of the input to the predicate
+     * @return a RankedPredicate whose tier is the index of the first matching predicate
+     * @throws IllegalArgumentException if there is no predicate or more than {@link PredicateWithAlt#MAX_TIER} + 1
+     */
+    static <T> RankedPredicate<T> buildRanked(List<? extends Predicate<T>> tiers) {
+        return rankedOf(tiers.toArray(PredicateWithAlt.<T>newPredicates(tiers.size())));
+    }
+
+    /**
+     * Same as {@link PredicateWithAlt#buildRanked(List)}
+     * @param tiers the predicate of each tier, the first one is the preferred one
+     * @param <T> the type of the input to the predicate
+     * @return a RankedPredicate whose tier is the index of the first matching predicate
+     */
+    @SafeVarargs
+    static <T> RankedPredicate<T> buildRanked(Predicate<T>... tiers) {
+        Predicate<T>[] predicates = newPredicates(tiers.length);
+        for (int tier = 0; tier < tiers.length; tier++) predicates[tier] = tiers[tier];
+        return rankedOf(predicates);
+    }
+
+    private static <T> RankedPredicate<T> rankedOf(Predicate<T>[] predicates) {
+        if (predicates.length == 0 || predicates.length > MAX_TIER + 1) {
+            throw new IllegalArgumentException("Between 1 and " + (MAX_TIER + 1) + " tiers expected !");
+        }
+        for (Predicate<T> predicate : predicates) Objects.requireNonNull(predicate);
+        return t -> {
+            for (int tier = 0; tier < predicates.length; tier++) {
+                if (predicates[tier].test(t)) return tier;
+            }
+            return NO_TIER;
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Predicate<T>[] newPredicates(int size) {
+        return (Predicate<T>[]) new Predicate<?>[size];
+    }
+
 }
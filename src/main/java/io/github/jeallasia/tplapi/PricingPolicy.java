@@ -2,11 +2,14 @@ package io.github.jeallasia.tplapi;
 
 import javax.money.MonetaryAmount;
 import java.time.Duration;
-import java.time.temporal.ChronoUnit;
+import java.util.function.Function;
 
 
 /**
- * Represents a pricing policy that can compute a price from a given {@link ParkingSlot}
+ * Represents a pricing policy that can compute a price from a given {@link ParkingSlot}.
+ * The parking compiles the policies built only from {@link PricingPolicy#AND(PricingPolicy, PricingPolicy)},
+ * {@link PricingPolicy#PER_HOUR(MonetaryAmount, boolean)} and {@link PricingPolicy#FIXED(MonetaryAmount)} (and the
+ * other built-in policies made of them) into a single evaluator, so prefer them to your own lambdas when possible.
  *
  * @param <T> the type of the ParkingSlot input (The car class you are using)
  */
@@ -20,6 +23,39 @@ public interface PricingPolicy<T> {
      */
     MonetaryAmount computePrice(ParkingSlot<T> slot);
 
+    /**
+     * Price many stays at once, like to price again historical stays after a change of tariff.
+     * Built-in policies are evaluated directly on the timestamps, other ones are called with a {@link ParkingSlot}
+     * without any car.
+     * A timestamp is the number of nanoseconds since 1970-01-01T00:00 of the local date time:
+     * {@code dateTime.toEpochSecond(ZoneOffset.UTC) * 1_000_000_000L + dateTime.getNano()}.
+     *
+     * @param incomingEpochNanos the incoming timestamp of each stay
+     * @param outgoingEpochNanos the outgoing timestamp of each stay
+     * @param scale the number of decimals of the units (2 for cents)
+     * @return the price of each stay, in units of 10^-scale
+     * @throws ArithmeticException if a price can't be represented exactly in units
+     * @throws IllegalArgumentException if an outgoing date is before its incoming date
+     */
+    default long[] computePrices(long[] incomingEpochNanos, long[] outgoingEpochNanos, int scale) {
+        return BulkPricing.computePrices(this, incomingEpochNanos, outgoingEpochNanos, scale, false);
+    }
+
+    /**
+     * Same as {@link PricingPolicy#computePrices(long[], long[], int)}, splitting the stays in chunks priced in
+     * parallel in the common {@link java.util.concurrent.ForkJoinPool}, the policy has to be thread safe.
+     *
+     * @param incomingEpochNanos the incoming timestamp of each stay
+     * @param outgoingEpochNanos the outgoing timestamp of each stay
+     * @param scale the number of decimals of the units (2 for cents)
+     * @return the price of each stay, in units of 10^-scale
+     * @throws ArithmeticException if a price can't be represented exactly in units
+     * @throws IllegalArgumentException if an outgoing date is before its incoming date
+     */
+    default long[] computePricesParallel(long[] incomingEpochNanos, long[] outgoingEpochNanos, int scale) {
+        return BulkPricing.computePrices(this, incomingEpochNanos, outgoingEpochNanos, scale, true);
+    }
+
     /**
      * Create a new pricing policy from 2 others (sum of both results)
      *
@@ -29,7 +65,7 @@ public interface PricingPolicy<T> {
      * @return resulting {@link PricingPolicy}
      */
     static <T> PricingPolicy<T> AND(PricingPolicy<T> policy1, PricingPolicy<T> policy2) {
-        return slot -> policy1.computePrice(slot).add(policy2.computePrice(slot));
+        return new AndPricing<>(policy1, policy2);
     }
 
     /**
@@ -41,7 +77,7 @@ public interface PricingPolicy<T> {
      * @return {@link PricingPolicy} based on a price per hour
      */
     static <T> PricingPolicy<T> PER_HOUR(MonetaryAmount pricePerHour, boolean countHourStarted) {
-        return slot -> computePerHour(slot.computeDuration(), pricePerHour, countHourStarted);
+        return new PerHourPricing<>(pricePerHour, countHourStarted);
     }
 
     /**
@@ -52,7 +88,37 @@ public interface PricingPolicy<T> {
      * @return {@link PricingPolicy} based on a price per hour
      */
     static <T> PricingPolicy<T> FIXED(MonetaryAmount fixedPrice) {
-        return usage -> fixedPrice;
+        return new FixedPricing<>(fixedPrice);
+    }
+
+    /**
+     * Build pricing policy from a tariff depending only on the duration (like a price per started hour with the first
+     * 15 minutes free and a daily cap), computed once for each number of started buckets up to the horizon.
+     * The duration is rounded up to the next bucket, and beyond the horizon each full horizon costs the price of the
+     * horizon: for a one day horizon, the price of 2 days and 3 hours is twice the price of 1 day plus the price of
+     * 3 hours.
+     *
+     * @param bucket the step of the tariff (like 15 minutes)
+     * @param horizon the duration up to which prices are precomputed (like 1 day), a multiple of the bucket
+     * @param tariff the price of a duration (only called for multiples of the bucket up to the horizon)
+     * @param <T> the Class you use for your cars
+     * @return {@link PricingPolicy} based on the precomputed tariff
+     * @throws IllegalArgumentException if the horizon is not a positive multiple of the bucket
+     */
+    static <T> PricingPolicy<T> TABLE(Duration bucket, Duration horizon, Function<Duration, MonetaryAmount> tariff) {
+        return new TablePricing<>(bucket, horizon, tariff);
+    }
+
+    /**
+     * Start building a pricing policy whose price per hour depends on the time of the day and the day of the week
+     * (night, week-end, peak hours...). The price is prorated to the second, based on the local date times.
+     *
+     * @param defaultPricePerHour the price per hour outside the periods set on the builder
+     * @param <T> the Class you use for your cars
+     * @return {@link WeeklyTariffBuilder} the builder
+     */
+    static <T> WeeklyTariffBuilder<T> WEEKLY(MonetaryAmount defaultPricePerHour) {
+        return new WeeklyTariffBuilder<>(defaultPricePerHour);
     }
 
     /**
@@ -110,11 +176,19 @@ public interface PricingPolicy<T> {
      * @return the price in {@link MonetaryAmount}
      */
     static MonetaryAmount computePerHour(Duration duration, MonetaryAmount pricePerHour, boolean countHourStarted) {
-        MonetaryAmount price = pricePerHour.multiply(duration.toHours());
-        if (countHourStarted && (duration.truncatedTo(ChronoUnit.HOURS) != duration)) {
-            price = price.add(pricePerHour);
-        }
-        return price;
+        return computePerHour(duration.toNanos(), pricePerHour, countHourStarted);
+    }
+
+    /**
+     * Method to compute price per hour from a duration in nanoseconds
+     *
+     * @param durationNanos the duration to price in nanoseconds
+     * @param pricePerHour the price per hour
+     * @param countHourStarted if true, count hour started (only hour finished if false)
+     * @return the price in {@link MonetaryAmount}
+     */
+    static MonetaryAmount computePerHour(long durationNanos, MonetaryAmount pricePerHour, boolean countHourStarted) {
+        return pricePerHour.multiply(PerHourPricing.countHours(durationNanos, countHourStarted));
     }
 
 }
@@ -0,0 +1,39 @@
+package io.github.jeallasia.tplapi;
+
+/**
+ * {@link PredicateWithAlt} defining any number of levels of preference: {@link RankedPredicate#tierOf(Object)} gives
+ * the tier of the slot for a car (like 0 for a 50kW charger, 1 for a 20kW charger, 2 for a regular slot and 3 for the
+ * overflow), {@link Parking#checkIn(Object)} takes a free slot of the lowest tier, in a single pass over the groups of
+ * slots. Tier 0 is the preferred one (See {@link PredicateWithAlt#test(Object)}), all the others are alternatives
+ * (See {@link PredicateWithAlt#testAlt(Object)}).
+ *
+ * @param <T> the type of the input to the predicate (The car class you are using)
+ */
+@FunctionalInterface
+public interface RankedPredicate<T> extends PredicateWithAlt<T> {
+
+    /**
+     * Evaluates the rank of the slot for the given argument.
+     *
+     * @param t the input argument
+     * @return the tier of the slot for the input argument (from 0 to {@link PredicateWithAlt#MAX_TIER}),
+     * {@link PredicateWithAlt#NO_TIER} if it doesn't match
+     */
+    @Override
+    int tierOf(T t);
+
+    @Override
+    default boolean test(T t) {
+        return tierOf(t) == 0;
+    }
+
+    @Override
+    default boolean testAlt(T t) {
+        return tierOf(t) > 0;
+    }
+
+    @Override
+    default boolean testCompatible(T t) {
+        return tierOf(t) >= 0;
+    }
+}
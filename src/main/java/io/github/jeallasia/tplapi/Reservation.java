@@ -0,0 +1,64 @@
+package io.github.jeallasia.tplapi;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A slot held for a car until it checks in or until the reservation expires
+ * (See {@link Parking#reserve(Object, java.time.LocalDateTime, java.time.Duration)}).
+ * The reservation stays in the {@link ReservationQueue} until its expiry even if it is used or cancelled before:
+ * the first to {@link Reservation#claim()} it (check in, cancellation or expiry) gives back or occupies the slot.
+ *
+ * @param <T> the car class you want to use
+ */
+final class Reservation<T> {
+
+    private final T car;
+    private final ParkingSlot<T> slot;
+    private final int tier;
+    private final long expiryEpochNanos;
+    private final AtomicBoolean claimed = new AtomicBoolean();
+
+    Reservation(T car, ParkingSlot<T> slot, int tier, long expiryEpochNanos) {
+        this.car = car;
+        this.slot = slot;
+        this.tier = tier;
+        this.expiryEpochNanos = expiryEpochNanos;
+    }
+
+    T getCar() {
+        return car;
+    }
+
+    ParkingSlot<T> getSlot() {
+        return slot;
+    }
+
+    /**
+     * @return the tier of the reserved slot for the car (See {@link PredicateWithAlt#tierOf(Object)})
+     */
+    int getTier() {
+        return tier;
+    }
+
+    /**
+     * @return the timestamp from which the slot is not held anymore (See {@link Timestamps})
+     */
+    long getExpiryEpochNanos() {
+        return expiryEpochNanos;
+    }
+
+    /**
+     * @param epochNanos a timestamp (See {@link Timestamps})
+     * @return {@code true} if the reservation is expired at this timestamp
+     */
+    boolean isExpired(long epochNanos) {
+        return epochNanos >= expiryEpochNanos;
+    }
+
+    /**
+     * @return {@code true} if the caller is the first to claim the reservation and has to take care of the slot
+     */
+    boolean claim() {
+        return !claimed.get() && claimed.compareAndSet(false, true);
+    }
+}
@@ -0,0 +1,58 @@
+package io.github.jeallasia.tplapi;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The reservations of a {@link Parking} ordered by expiry, so that expiring them costs nothing until the first one
+ * expires (the next expiry is read without lock) and then only a logarithmic time per expired reservation.
+ *
+ * @param <T> the car class you want to use
+ */
+final class ReservationQueue<T> {
+
+    private final PriorityQueue<Reservation<T>> queue =
+            new PriorityQueue<>(Comparator.comparingLong(Reservation::getExpiryEpochNanos));
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile long nextExpiryEpochNanos = Long.MAX_VALUE;
+
+    /**
+     * @param reservation the new reservation
+     */
+    void add(Reservation<T> reservation) {
+        lock.lock();
+        try {
+            queue.add(reservation);
+            nextExpiryEpochNanos = queue.peek().getExpiryEpochNanos();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param epochNanos the current timestamp (See {@link Timestamps})
+     * @return the reservations expired at this timestamp, removed from the queue (including the ones already used or
+     * cancelled)
+     */
+    List<Reservation<T>> pollExpired(long epochNanos) {
+        if (epochNanos < nextExpiryEpochNanos) {
+            return Collections.emptyList();
+        }
+        lock.lock();
+        try {
+            List<Reservation<T>> expired = new ArrayList<>();
+            while (!queue.isEmpty() && queue.peek().isExpired(epochNanos)) {
+                expired.add(queue.poll());
+            }
+            Reservation<T> next = queue.peek();
+            nextExpiryEpochNanos = next == null ? Long.MAX_VALUE : next.getExpiryEpochNanos();
+            return expired;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package io.github.jeallasia.tplapi;
+
+import java.time.LocalDateTime;
+
+/**
+ * This class is used to expose the result of {@link Parking#reserve(Object, LocalDateTime, java.time.Duration)}
+ */
+public final class ReservationResult {
+
+    private final String slotId;
+    private final LocalDateTime expiryDateTime;
+
+    /**
+     * Created during {@link Parking#reserve(Object, LocalDateTime, java.time.Duration)}
+     */
+    ReservationResult(String slotId, LocalDateTime expiryDateTime) {
+        this.slotId = slotId;
+        this.expiryDateTime = expiryDateTime;
+    }
+
+    /**
+     * Return {@code true} if a slot was reserved.
+     *
+     * @return {@code true} if a slot was reserved
+     */
+    public boolean isSuccessful() {
+        return slotId != null;
+    }
+
+    /**
+     * Return the id of the reserved slot.
+     *
+     * @return the id of the reserved slot, {@code null} if no slot was found
+     */
+    public String getSlotId() {
+        return slotId;
+    }
+
+    /**
+     * Return the date time from which the slot is not held anymore if the car didn't check in.
+     *
+     * @return the expiry date time, {@code null} if no slot was found
+     */
+    public LocalDateTime getExpiryDateTime() {
+        return expiryDateTime;
+    }
+}
@@ -0,0 +1,116 @@
+package io.github.jeallasia.tplapi;
+
+import javax.money.MonetaryAmount;
+import java.time.LocalDateTime;
+
+/**
+ * Reusable holder filled by {@link Parking#checkIn(Object, LocalDateTime, SlotHandle)} and
+ * {@link Parking#checkOut(Object, LocalDateTime, SlotHandle)}.
+ * Unlike {@link CheckInResult} and {@link CheckOutResult} it does not contain a copy of the {@link ParkingSlot},
+ * so that a caller reusing the same handle does not allocate anything on check in and check out.
+ * A handle is not thread safe, use one per thread.
+ *
+ * @param <T> The Car class you want to use
+ */
+public final class SlotHandle<T> {
+
+    private boolean successful;
+    private String id;
+    private T car;
+    private long incomingEpochNanos = Timestamps.NONE;
+    private long outgoingEpochNanos = Timestamps.NONE;
+    private int tier = PredicateWithAlt.NO_TIER;
+    private MonetaryAmount price;
+
+    /**
+     * Create an empty handle.
+     */
+    public SlotHandle() {
+    }
+
+    /**
+     * Fill the handle with the current state of the slot.
+     *
+     * @param slot  the slot allocated to the car
+     * @param price the price (only on check out)
+     */
+    void fill(ParkingSlot<T> slot, MonetaryAmount price) {
+        this.successful = true;
+        this.id = slot.getId();
+        this.car = slot.getCar();
+        this.incomingEpochNanos = slot.getIncomingEpochNanos();
+        this.outgoingEpochNanos = slot.getOutgoingEpochNanos();
+        this.tier = slot.tier();
+        this.price = price;
+    }
+
+    /**
+     * Reset the handle, no slot was found.
+     */
+    void clear() {
+        this.successful = false;
+        this.id = null;
+        this.car = null;
+        this.incomingEpochNanos = Timestamps.NONE;
+        this.outgoingEpochNanos = Timestamps.NONE;
+        this.tier = PredicateWithAlt.NO_TIER;
+        this.price = null;
+    }
+
+    /**
+     * @return {@code true} if a slot was found during the last check in (or check out)
+     */
+    public boolean isSuccessful() {
+        return successful;
+    }
+
+    /**
+     * @return the id of the parking slot
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return the car in
+     */
+    public T getCar() {
+        return car;
+    }
+
+    /**
+     * @return the car incoming date time
+     */
+    public LocalDateTime getIncomingDateTime() {
+        return Timestamps.toLocalDateTime(incomingEpochNanos);
+    }
+
+    /**
+     * @return the car outgoing date time (only on check out)
+     */
+    public LocalDateTime getOutgoingDateTime() {
+        return Timestamps.toLocalDateTime(outgoingEpochNanos);
+    }
+
+    /**
+     * @return {@code true} if the slot was selected as an alternative for this car
+     */
+    public boolean isUsingAlternative() {
+        return tier > 0;
+    }
+
+    /**
+     * @return the tier of the slot for this car, 0 for a preferred slot (See {@link PredicateWithAlt#tierOf(Object)}),
+     * {@link PredicateWithAlt#NO_TIER} if no slot was found
+     */
+    public int getTier() {
+        return tier;
+    }
+
+    /**
+     * @return the computed price (only on check out)
+     */
+    public MonetaryAmount getPrice() {
+        return price;
+    }
+}
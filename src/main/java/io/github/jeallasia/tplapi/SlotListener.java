@@ -0,0 +1,30 @@
+package io.github.jeallasia.tplapi;
+
+import javax.money.MonetaryAmount;
+
+/**
+ * Listener notified by the {@link Parking} of each check in, check out and rejection, while the slot is still owned by the
+ * caller (so in the order of the slot allocations).
+ * The slot given can be the live one: it must not be kept, nor modified.
+ *
+ * @param <T> the car class you want to use
+ */
+interface SlotListener<T> {
+
+    /**
+     * @param slot the slot just allocated to a car
+     */
+    void checkedIn(ParkingSlot<T> slot);
+
+    /**
+     * @param slot  the slot describing the whole usage (with the outgoing date time), before it is given back
+     * @param price the price of the usage, {@code null} if the pricing policy failed
+     */
+    void checkedOut(ParkingSlot<T> slot, MonetaryAmount price);
+
+    /**
+     * @param car the car no slot was found for
+     */
+    default void rejected(T car) {
+    }
+}
@@ -0,0 +1,220 @@
+package io.github.jeallasia.tplapi;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Group of {@link ParkingSlot} of the same zone (See {@link ParkingBuilder#setZone(String)}) sharing the same
+ * {@link PredicateWithAlt} instance.
+ * The free slots of the pool are kept ordered by key (See {@link SlotSelectionStrategy}, by default their rank:
+ * insertion order in the {@link Parking}), this allows {@link Parking#checkIn(Object)} to evaluate the policy once per
+ * pool instead of once per slot.
+ * Mutations have to be guarded by the caller, the counters and the key of the first free slot can however be read
+ * without lock.
+ *
+ * @param <T> the car class you want to use
+ */
+final class SlotPool<T> {
+
+    /**
+     * Value of {@link SlotPool#getFirstFreeKey()} when there is no free slot
+     */
+    static final long NO_FREE_SLOT = Long.MAX_VALUE;
+
+    private final PredicateWithAlt<T> policy;
+    private final int zone;
+    private final SlotSelectionStrategy.Selector selector;
+    private final PriorityQueue<ParkingSlot<T>> free = new PriorityQueue<>(
+            Comparator.<ParkingSlot<T>>comparingLong(ParkingSlot::getSelectionKey).thenComparingInt(ParkingSlot::getRank));
+    private int size = 0;
+    private volatile int freeCount = 0;
+    private volatile long firstFreeKey = NO_FREE_SLOT;
+    private volatile int reservedCount = 0;
+    /**
+     * Guards the mutations when the pool is shared by concurrent threads (See {@link ConcurrentParking})
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * @param policy   the policy shared by all slots of this pool
+     * @param zone     the index of the zone of all slots of this pool
+     * @param selector the keys of the free slots, shared by all pools of the parking
+     */
+    SlotPool(PredicateWithAlt<T> policy, int zone, SlotSelectionStrategy.Selector selector) {
+        this.policy = policy;
+        this.zone = zone;
+        this.selector = selector;
+    }
+
+    /**
+     * Add a new (free) slot to the pool, used when the parking is built.
+     *
+     * @param slot the slot to add
+     */
+    void add(ParkingSlot<T> slot) {
+        size++;
+        slot.setPool(this);
+        slot.setSelectionKey(selector.added(slot));
+        free.add(slot);
+        updateFreeSlots();
+    }
+
+    /**
+     * @return the policy shared by all slots of this pool
+     */
+    PredicateWithAlt<T> getPolicy() {
+        return policy;
+    }
+
+    /**
+     * @return the index of the zone of all slots of this pool
+     */
+    int getZone() {
+        return zone;
+    }
+
+    /**
+     * @return the lock guarding the mutations of this pool, if it is shared by concurrent threads
+     */
+    ReentrantLock getLock() {
+        return lock;
+    }
+
+    /**
+     * @return the total number of slots in this pool
+     */
+    int getSize() {
+        return size;
+    }
+
+    /**
+     * @return the number of free slots in this pool
+     */
+    int getFreeCount() {
+        return freeCount;
+    }
+
+    /**
+     * @return the number of occupied slots in this pool (not counting the reserved ones)
+     */
+    int getOccupiedCount() {
+        return size - freeCount - reservedCount;
+    }
+
+    /**
+     * @return the number of reserved slots in this pool
+     */
+    int getReservedCount() {
+        return reservedCount;
+    }
+
+    /**
+     * Take the first free slot (lowest key) to hold it for a car.
+     *
+     * @return the reserved slot, {@code null} if none
+     */
+    ParkingSlot<T> reserveFree() {
+        ParkingSlot<T> slot = pollFree();
+        if (slot != null) {
+            reservedCount++;
+        }
+        return slot;
+    }
+
+    /**
+     * The reserved slot is now occupied by the car it was held for.
+     */
+    void reservationUsed() {
+        reservedCount--;
+    }
+
+    /**
+     * Give back a reserved slot (cancelled or expired reservation).
+     *
+     * @param slot the reserved slot
+     */
+    void releaseReserved(ParkingSlot<T> slot) {
+        reservedCount--;
+        release(slot);
+    }
+
+    /**
+     * @return {@code true} if at least one slot of this pool is free
+     */
+    boolean hasFree() {
+        return freeCount != 0;
+    }
+
+    /**
+     * @return the key of the first free slot, {@link SlotPool#NO_FREE_SLOT} if none
+     */
+    long getFirstFreeKey() {
+        return firstFreeKey;
+    }
+
+    /**
+     * @return the first free slot (lowest key) without removing it, {@code null} if none
+     */
+    ParkingSlot<T> peekFree() {
+        return free.peek();
+    }
+
+    /**
+     * @return the first free slot (lowest key) removing it from the free slots, {@code null} if none
+     */
+    ParkingSlot<T> pollFree() {
+        ParkingSlot<T> slot = free.poll();
+        updateFreeSlots();
+        if (slot != null) {
+            selector.allocated(slot);
+        }
+        return slot;
+    }
+
+    /**
+     * Give back a slot that was just freed.
+     *
+     * @param slot the freed slot
+     */
+    void release(ParkingSlot<T> slot) {
+        slot.setSelectionKey(selector.released(slot));
+        free.add(slot);
+        updateFreeSlots();
+    }
+
+    /**
+     * Remove the occupied slots from the free slots, used when the parking is restored.
+     */
+    void removeOccupied() {
+        free.removeIf(slot -> !slot.isFree());
+        updateFreeSlots();
+    }
+
+    private void updateFreeSlots() {
+        freeCount = free.size();
+        ParkingSlot<T> first = free.peek();
+        firstFreeKey = first == null ? NO_FREE_SLOT : first.getSelectionKey();
+    }
+
+    /**
+     * Select between two pools the one of the home zone of the car if only one of them is, otherwise the one having
+     * the first free slot (lowest key).
+     *
+     * @param current the current best pool (can be {@code null})
+     * @param candidate the candidate pool
+     * @param home the index of the home zone of the car (See {@link Parking#homeZoneOf(Object)})
+     * @param <T> the car class you want to use
+     * @return the best pool
+     */
+    static <T> SlotPool<T> first(SlotPool<T> current, SlotPool<T> candidate, int home) {
+        if (current == null) {
+            return candidate;
+        }
+        boolean currentAtHome = current.zone == home;
+        if (currentAtHome != (candidate.zone == home)) {
+            return currentAtHome ? current : candidate;
+        }
+        return candidate.getFirstFreeKey() < current.getFirstFreeKey() ? candidate : current;
+    }
+}
@@ -0,0 +1,150 @@
+package io.github.jeallasia.tplapi;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Defines which free slot a car gets among the slots it can use (See {@link ParkingBuilder#setSlotSelectionStrategy(SlotSelectionStrategy)}).
+ * Each strategy gives a key to every slot (when it is allocated or released), the car gets the matching free slot
+ * having the lowest key: the free slots of each group of slots are kept in a heap ordered by key, so that choosing a slot takes
+ * a logarithmic time whatever the strategy.
+ */
+public final class SlotSelectionStrategy {
+
+    /**
+     * Gives the keys of the free slots of one {@link Parking}, thread safe
+     */
+    interface Selector {
+
+        /**
+         * @param slot the slot added to the parking, in order of rank
+         * @return the key of the slot before its first allocation
+         */
+        long added(ParkingSlot<?> slot);
+
+        /**
+         * @param slot the slot just given back (its key is the one of its last release)
+         * @return the key of the free slot
+         */
+        long released(ParkingSlot<?> slot);
+
+        /**
+         * @param slot the slot just allocated
+         */
+        default void allocated(ParkingSlot<?> slot) {
+        }
+    }
+
+    private final Supplier<Selector> selectors;
+
+    private SlotSelectionStrategy(Supplier<Selector> selectors) {
+        this.selectors = selectors;
+    }
+
+    /**
+     * @return a new selector, for a new parking
+     */
+    Selector newSelector() {
+        return selectors.get();
+    }
+
+    /**
+     * The first free slot, in the order the slots were added to the builder (the default strategy).
+     * Cars are packed at the front of the parking.
+     *
+     * @return the strategy
+     */
+    public static SlotSelectionStrategy FIRST_FREE() {
+        return new SlotSelectionStrategy(() -> new Selector() {
+            @Override
+            public long added(ParkingSlot<?> slot) {
+                return slot.getRank();
+            }
+
+            @Override
+            public long released(ParkingSlot<?> slot) {
+                return slot.getRank();
+            }
+        });
+    }
+
+    /**
+     * The free slot released for the longest time (slots never used first, in the order they were added), to spread
+     * the wear of the slots (like chargers).
+     *
+     * @return the strategy
+     */
+    public static SlotSelectionStrategy LEAST_RECENTLY_USED() {
+        return new SlotSelectionStrategy(() -> {
+            AtomicLong releases = new AtomicLong();
+            return new Selector() {
+                @Override
+                public long added(ParkingSlot<?> slot) {
+                    return releases.getAndIncrement();
+                }
+
+                @Override
+                public long released(ParkingSlot<?> slot) {
+                    return releases.getAndIncrement();
+                }
+            };
+        });
+    }
+
+    /**
+     * The free slot allocated for the longest time (slots never used first, in the order they were added): cars cycle
+     * through the slots, to spread them across the parking (like across floors when slots are added alternating the
+     * floors).
+     *
+     * @return the strategy
+     */
+    public static SlotSelectionStrategy ROUND_ROBIN() {
+        return new SlotSelectionStrategy(() -> {
+            AtomicLong allocations = new AtomicLong();
+            return new Selector() {
+                @Override
+                public long added(ParkingSlot<?> slot) {
+                    return allocations.getAndIncrement();
+                }
+
+                @Override
+                public long released(ParkingSlot<?> slot) {
+                    // Set by the allocation
+                    return slot.getSelectionKey();
+                }
+
+                @Override
+                public void allocated(ParkingSlot<?> slot) {
+                    slot.setSelectionKey(allocations.getAndIncrement());
+                }
+            };
+        });
+    }
+
+    /**
+     * The free slot having the lowest distance (like to the exit, or any other priority), then the first one added.
+     *
+     * @param distanceOfSlot the distance of each slot (by slot id), evaluated once per slot when the parking is built
+     * @return the strategy
+     */
+    public static SlotSelectionStrategy NEAREST(ToLongFunction<String> distanceOfSlot) {
+        Objects.requireNonNull(distanceOfSlot);
+        return new SlotSelectionStrategy(() -> new Selector() {
+            @Override
+            public long added(ParkingSlot<?> slot) {
+                long distance = distanceOfSlot.applyAsLong(slot.getId());
+                if (distance == Long.MAX_VALUE) {
+                    throw new IllegalArgumentException("The distance of the slot " + slot.getId() + " is too large !");
+                }
+                return distance;
+            }
+
+            @Override
+            public long released(ParkingSlot<?> slot) {
+                return slot.getSelectionKey();
+            }
+        });
+    }
+}
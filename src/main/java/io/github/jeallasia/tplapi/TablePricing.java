@@ -0,0 +1,93 @@
+package io.github.jeallasia.tplapi;
+
+import javax.money.MonetaryAmount;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.LongBinaryOperator;
+
+/**
+ * {@link PricingPolicy#TABLE(Duration, Duration, Function)}: the prices of each number of started buckets up to the
+ * horizon are computed once, pricing a duration up to the horizon is then an array lookup.
+ *
+ * @param <T> the car class you want to use
+ */
+final class TablePricing<T> implements PricingPolicy<T>, UnitPricing {
+
+    private final long bucketNanos;
+    /**
+     * Price for each number of started buckets, from 0 to the number of buckets in the horizon
+     */
+    private final MonetaryAmount[] prices;
+
+    TablePricing(Duration bucket, Duration horizon, Function<Duration, MonetaryAmount> tariff) {
+        Objects.requireNonNull(tariff);
+        if (bucket.isNegative() || bucket.isZero()) {
+            throw new IllegalArgumentException("Bucket should be positive !");
+        }
+        this.bucketNanos = bucket.toNanos();
+        long horizonNanos = horizon.toNanos();
+        if (horizonNanos < bucketNanos || horizonNanos % bucketNanos != 0) {
+            throw new IllegalArgumentException("Horizon should be a multiple of the bucket !");
+        }
+        long nbrBuckets = horizonNanos / bucketNanos;
+        if (nbrBuckets >= Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many buckets in the horizon !");
+        }
+        this.prices = new MonetaryAmount[(int) nbrBuckets + 1];
+        for (int i = 0; i < prices.length; i++) {
+            prices[i] = Objects.requireNonNull(tariff.apply(bucket.multipliedBy(i)), "The tariff should return a price !");
+        }
+    }
+
+    long getBucketNanos() {
+        return bucketNanos;
+    }
+
+    /**
+     * @return the prices for each number of started buckets (not a copy)
+     */
+    MonetaryAmount[] getPrices() {
+        return prices;
+    }
+
+    /**
+     * @param durationNanos the duration in nanoseconds
+     * @return the number of started buckets
+     */
+    long countBuckets(long durationNanos) {
+        if (durationNanos <= 0) return 0;
+        return (durationNanos - 1) / bucketNanos + 1;
+    }
+
+    /**
+     * @param prices        the prices for each number of started buckets, in units
+     * @param durationNanos the duration in nanoseconds
+     * @return the price in units
+     */
+    long computeUnits(long[] prices, long durationNanos) {
+        long buckets = countBuckets(durationNanos);
+        int horizon = prices.length - 1;
+        if (buckets <= horizon) {
+            return prices[(int) buckets];
+        }
+        return Math.addExact(Math.multiplyExact(prices[horizon], buckets / horizon), prices[(int) (buckets % horizon)]);
+    }
+
+    @Override
+    public LongBinaryOperator unitsAt(int scale) {
+        long[] units = new long[prices.length];
+        for (int i = 0; i < prices.length; i++) units[i] = MinorUnits.toUnits(prices[i], scale);
+        return (incomingEpochNanos, outgoingEpochNanos) -> computeUnits(units, outgoingEpochNanos - incomingEpochNanos);
+    }
+
+    @Override
+    public MonetaryAmount computePrice(ParkingSlot<T> slot) {
+        long buckets = countBuckets(slot.computeDurationNanos());
+        int horizon = prices.length - 1;
+        if (buckets <= horizon) {
+            return prices[(int) buckets];
+        }
+        return prices[horizon].multiply(buckets / horizon).add(prices[(int) (buckets % horizon)]);
+    }
+}
@@ -0,0 +1,77 @@
+package io.github.jeallasia.tplapi;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Conversions between {@link LocalDateTime} (used by the API) and the {@code long} timestamps used internally:
+ * the number of nanoseconds since 1970-01-01T00:00 (local date time read as UTC).
+ * Supported dates go from {@link Timestamps#MIN_DATE_TIME} (year 1677) to {@link Timestamps#MAX_DATE_TIME} (year 2262).
+ */
+final class Timestamps {
+
+    /**
+     * Value used when there is no timestamp
+     */
+    static final long NONE = Long.MIN_VALUE;
+    static final long NANOS_PER_SECOND = 1_000_000_000L;
+    static final long NANOS_PER_HOUR = 3600 * NANOS_PER_SECOND;
+    /**
+     * First supported date time
+     */
+    static final LocalDateTime MIN_DATE_TIME = toLocalDateTime(NONE + 1);
+    /**
+     * Last supported date time
+     */
+    static final LocalDateTime MAX_DATE_TIME = toLocalDateTime(Long.MAX_VALUE);
+
+    private Timestamps() {
+    }
+
+    /**
+     * @param dateTime the date time to convert
+     * @return the corresponding timestamp, {@link Timestamps#NONE} if dateTime is {@code null}
+     * @throws IllegalArgumentException if the date time is not supported
+     */
+    static long toEpochNanos(LocalDateTime dateTime) {
+        if (dateTime == null) return NONE;
+        if (dateTime.isBefore(MIN_DATE_TIME) || dateTime.isAfter(MAX_DATE_TIME)) {
+            throw new IllegalArgumentException("The date time " + dateTime + " is out of the supported range ["
+                    + MIN_DATE_TIME + ", " + MAX_DATE_TIME + "] !");
+        }
+        return dateTime.toEpochSecond(ZoneOffset.UTC) * NANOS_PER_SECOND + dateTime.getNano();
+    }
+
+    /**
+     * @param epochNanos the timestamp to convert
+     * @return the corresponding date time, {@code null} if epochNanos is {@link Timestamps#NONE}
+     */
+    static LocalDateTime toLocalDateTime(long epochNanos) {
+        if (epochNanos == NONE) return null;
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(epochNanos, NANOS_PER_SECOND),
+                (int) Math.floorMod(epochNanos, NANOS_PER_SECOND), ZoneOffset.UTC);
+    }
+
+    /**
+     * @param clock the clock to read
+     * @return the timestamp of {@link LocalDateTime#now(Clock)}
+     */
+    static long now(Clock clock) {
+        if (clock instanceof CoarseClock) {
+            return ((CoarseClock) clock).localEpochNanos();
+        }
+        Instant instant = clock.instant();
+        return toEpochNanos(instant, clock.getZone().getRules().getOffset(instant));
+    }
+
+    /**
+     * @param instant the instant to convert
+     * @param offset  the offset of the local date time at this instant
+     * @return the timestamp of the local date time
+     */
+    static long toEpochNanos(Instant instant, ZoneOffset offset) {
+        return (instant.getEpochSecond() + offset.getTotalSeconds()) * NANOS_PER_SECOND + instant.getNano();
+    }
+}
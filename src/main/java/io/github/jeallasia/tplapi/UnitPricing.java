@@ -0,0 +1,30 @@
+package io.github.jeallasia.tplapi;
+
+import java.util.function.LongBinaryOperator;
+
+/**
+ * Built-in {@link PricingPolicy} able to price a stay directly in {@link MinorUnits}, without any
+ * {@link ParkingSlot}, used by {@link PricingPolicy#computePrices(long[], long[], int)}.
+ */
+interface UnitPricing {
+
+    /**
+     * @param scale the scale of the units
+     * @return a thread safe function computing the price in units from the incoming and outgoing timestamps
+     * (See {@link Timestamps})
+     * @throws ArithmeticException if the prices can't be represented exactly at this scale
+     */
+    LongBinaryOperator unitsAt(int scale);
+
+    /**
+     * @param policy the policy
+     * @return {@code true} if the policy and all the policies it is made of are {@link UnitPricing}
+     */
+    static boolean isUnitPricing(PricingPolicy<?> policy) {
+        if (policy instanceof AndPricing) {
+            return isUnitPricing(((AndPricing<?>) policy).getPolicy1())
+                    && isUnitPricing(((AndPricing<?>) policy).getPolicy2());
+        }
+        return policy instanceof UnitPricing;
+    }
+}
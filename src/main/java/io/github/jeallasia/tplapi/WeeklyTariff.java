@@ -0,0 +1,171 @@
+package io.github.jeallasia.tplapi;
+
+import javax.money.CurrencyUnit;
+import javax.money.MonetaryAmount;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.function.LongBinaryOperator;
+
+/**
+ * {@link PricingPolicy#WEEKLY(MonetaryAmount)}: the week is compiled into segments having the same price per hour,
+ * with the cumulated cost from monday 00:00 at the start of each segment. The cost of a stay is then the difference of
+ * the cumulated costs at its bounds within their weeks, each week crossed costing the cost of the week, whatever the
+ * number of segments crossed. The price is prorated to the second, based on the local date times, and rounded half up.
+ *
+ * @param <T> the car class you want to use
+ */
+final class WeeklyTariff<T> implements PricingPolicy<T>, UnitPricing {
+
+    static final int SECONDS_PER_DAY = 24 * 3600;
+    static final int SECONDS_PER_WEEK = 7 * SECONDS_PER_DAY;
+    /**
+     * 1970-01-01 (epoch day 0) is a thursday
+     */
+    private static final long EPOCH_SECONDS_SINCE_MONDAY = 3 * SECONDS_PER_DAY;
+
+    /**
+     * A price per hour, from a second of the week (monday 00:00 is 0) for a number of seconds
+     */
+    static final class Period {
+        private final int start;
+        private final int length;
+        private final MonetaryAmount pricePerHour;
+
+        Period(int start, int length, MonetaryAmount pricePerHour) {
+            this.start = start;
+            this.length = length;
+            this.pricePerHour = pricePerHour;
+        }
+
+        private boolean covers(int second) {
+            return Math.floorMod(second - start, SECONDS_PER_WEEK) < length;
+        }
+    }
+
+    private final int scale;
+    /**
+     * The amount of one unit
+     */
+    private final MonetaryAmount unit;
+    /**
+     * First second of each segment of the week, starting with 0
+     */
+    private final int[] starts;
+    /**
+     * Price per hour of each segment, in units
+     */
+    private final long[] pricesPerHour;
+    /**
+     * Cost from monday 00:00 to the start of each segment, in units x seconds
+     */
+    private final long[] cumulatedCosts;
+    private final long weekCost;
+
+    WeeklyTariff(MonetaryAmount defaultPricePerHour, List<Period> periods) {
+        CurrencyUnit currency = defaultPricePerHour.getCurrency();
+        int scale = Math.max(currency.getDefaultFractionDigits(), MinorUnits.scaleOf(defaultPricePerHour));
+        TreeSet<Integer> boundaries = new TreeSet<>();
+        boundaries.add(0);
+        for (Period period : periods) {
+            if (!currency.equals(period.pricePerHour.getCurrency())) {
+                throw new IllegalArgumentException("All prices should use the same currency !");
+            }
+            scale = Math.max(scale, MinorUnits.scaleOf(period.pricePerHour));
+            boundaries.add(period.start);
+            boundaries.add((period.start + period.length) % SECONDS_PER_WEEK);
+        }
+        if (scale > MinorUnits.MAX_SCALE) {
+            throw new IllegalArgumentException("Prices should have at most " + MinorUnits.MAX_SCALE + " decimals !");
+        }
+        this.scale = scale;
+        this.unit = MinorUnits.unitOf(scale, defaultPricePerHour);
+        // Price of each elementary segment, merging the consecutive ones having the same price
+        List<Integer> segmentStarts = new ArrayList<>();
+        List<Long> segmentPrices = new ArrayList<>();
+        for (int boundary : boundaries) {
+            MonetaryAmount pricePerHour = defaultPricePerHour;
+            for (Period period : periods) {
+                if (period.covers(boundary)) pricePerHour = period.pricePerHour;
+            }
+            long units = MinorUnits.toUnits(pricePerHour, scale);
+            if (segmentPrices.isEmpty() || segmentPrices.get(segmentPrices.size() - 1) != units) {
+                segmentStarts.add(boundary);
+                segmentPrices.add(units);
+            }
+        }
+        int nbrSegments = segmentStarts.size();
+        this.starts = new int[nbrSegments];
+        this.pricesPerHour = new long[nbrSegments];
+        this.cumulatedCosts = new long[nbrSegments];
+        long cost = 0;
+        for (int i = 0; i < nbrSegments; i++) {
+            starts[i] = segmentStarts.get(i);
+            pricesPerHour[i] = segmentPrices.get(i);
+            cumulatedCosts[i] = cost;
+            int end = i + 1 < nbrSegments ? segmentStarts.get(i + 1) : SECONDS_PER_WEEK;
+            cost = Math.addExact(cost, Math.multiplyExact(pricesPerHour[i], end - starts[i]));
+        }
+        this.weekCost = cost;
+    }
+
+    /**
+     * @param second a second of the week (monday 00:00 is 0)
+     * @return the cost from monday 00:00 to this second, in units x seconds
+     */
+    private long costInWeek(int second) {
+        int segment = Arrays.binarySearch(starts, second);
+        if (segment < 0) segment = -segment - 2;
+        // Can't overflow: the result lies between the cumulated costs of this segment and of the next one (or weekCost),
+        // all computed with exact arithmetic by the constructor
+        return cumulatedCosts[segment] + pricesPerHour[segment] * (second - starts[segment]);
+    }
+
+    /**
+     * @param incomingEpochNanos the incoming timestamp (See {@link Timestamps})
+     * @param outgoingEpochNanos the outgoing timestamp
+     * @return the price in units
+     */
+    long computeUnits(long incomingEpochNanos, long outgoingEpochNanos) {
+        return Math.floorDiv(computeCost(incomingEpochNanos, outgoingEpochNanos) + 1800, 3600);
+    }
+
+    /**
+     * The cost is computed relatively to the week of the incoming date time, so that it only overflows for stays
+     * longer than {@code Long.MAX_VALUE / weekCost} weeks.
+     *
+     * @param incomingEpochNanos the incoming timestamp (See {@link Timestamps})
+     * @param outgoingEpochNanos the outgoing timestamp
+     * @return the price in units x seconds
+     */
+    private long computeCost(long incomingEpochNanos, long outgoingEpochNanos) {
+        long incomingSinceMonday = Math.floorDiv(incomingEpochNanos, Timestamps.NANOS_PER_SECOND) + EPOCH_SECONDS_SINCE_MONDAY;
+        long outgoingSinceMonday = Math.floorDiv(outgoingEpochNanos, Timestamps.NANOS_PER_SECOND) + EPOCH_SECONDS_SINCE_MONDAY;
+        long weeks = Math.floorDiv(outgoingSinceMonday, SECONDS_PER_WEEK) - Math.floorDiv(incomingSinceMonday, SECONDS_PER_WEEK);
+        return Math.addExact(Math.multiplyExact(weeks, weekCost),
+                costInWeek(Math.floorMod(outgoingSinceMonday, SECONDS_PER_WEEK))
+                        - costInWeek(Math.floorMod(incomingSinceMonday, SECONDS_PER_WEEK)));
+    }
+
+    @Override
+    public LongBinaryOperator unitsAt(int scale) {
+        if (scale >= this.scale) {
+            long factor = MinorUnits.pow10(scale - this.scale);
+            return (incomingEpochNanos, outgoingEpochNanos) -> Math.floorDiv(
+                    Math.addExact(Math.multiplyExact(computeCost(incomingEpochNanos, outgoingEpochNanos), factor), 1800), 3600);
+        }
+        // Rounded to a coarser scale
+        long divisor = Math.multiplyExact(3600, MinorUnits.pow10(this.scale - scale));
+        return (incomingEpochNanos, outgoingEpochNanos) ->
+                Math.floorDiv(computeCost(incomingEpochNanos, outgoingEpochNanos) + divisor / 2, divisor);
+    }
+
+    @Override
+    public MonetaryAmount computePrice(ParkingSlot<T> slot) {
+        long incomingEpochNanos = slot.getIncomingEpochNanos();
+        long units = incomingEpochNanos == Timestamps.NONE ? 0
+                : computeUnits(incomingEpochNanos, slot.computeEndEpochNanos());
+        return MinorUnits.toAmount(units, unit);
+    }
+}
@@ -0,0 +1,77 @@
+package io.github.jeallasia.tplapi;
+
+import javax.money.MonetaryAmount;
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The builder associated with {@link PricingPolicy#WEEKLY(MonetaryAmount)} used to specify the price per hour of
+ * each period of the week (night, week-end, peak hours...). Later periods override the earlier ones.
+ *
+ * @param <T> the car class you want to use
+ */
+public class WeeklyTariffBuilder<T> {
+
+    private final MonetaryAmount defaultPricePerHour;
+    private final List<WeeklyTariff.Period> periods = new ArrayList<>();
+
+    WeeklyTariffBuilder(MonetaryAmount defaultPricePerHour) {
+        this.defaultPricePerHour = Objects.requireNonNull(defaultPricePerHour);
+    }
+
+    /**
+     * Set the price per hour of a period starting on a given day, the period ends the next day if to is before from
+     * (like 22:00 to 06:00), and lasts 24 hours if to is equal to from.
+     *
+     * @param day          the day of the start of the period
+     * @param from         the start of the period
+     * @param to           the end of the period
+     * @param pricePerHour the price per hour during the period
+     * @return {@link WeeklyTariffBuilder} the builder
+     */
+    public WeeklyTariffBuilder<T> setRate(DayOfWeek day, LocalTime from, LocalTime to, MonetaryAmount pricePerHour) {
+        Objects.requireNonNull(pricePerHour);
+        int length = Math.floorMod(to.toSecondOfDay() - from.toSecondOfDay(), WeeklyTariff.SECONDS_PER_DAY);
+        periods.add(new WeeklyTariff.Period(
+                (day.getValue() - 1) * WeeklyTariff.SECONDS_PER_DAY + from.toSecondOfDay(),
+                length == 0 ? WeeklyTariff.SECONDS_PER_DAY : length, pricePerHour));
+        return this;
+    }
+
+    /**
+     * Set the price per hour of a period, every day (See {@link WeeklyTariffBuilder#setRate(DayOfWeek, LocalTime, LocalTime, MonetaryAmount)}).
+     *
+     * @param from         the start of the period
+     * @param to           the end of the period
+     * @param pricePerHour the price per hour during the period
+     * @return {@link WeeklyTariffBuilder} the builder
+     */
+    public WeeklyTariffBuilder<T> setRate(LocalTime from, LocalTime to, MonetaryAmount pricePerHour) {
+        for (DayOfWeek day : DayOfWeek.values()) setRate(day, from, to, pricePerHour);
+        return this;
+    }
+
+    /**
+     * Set the price per hour of a whole day.
+     *
+     * @param day          the day
+     * @param pricePerHour the price per hour during the day
+     * @return {@link WeeklyTariffBuilder} the builder
+     */
+    public WeeklyTariffBuilder<T> setRate(DayOfWeek day, MonetaryAmount pricePerHour) {
+        return setRate(day, LocalTime.MIDNIGHT, LocalTime.MIDNIGHT, pricePerHour);
+    }
+
+    /**
+     * The final step, compiling the weekly schedule.
+     *
+     * @return the corresponding {@link PricingPolicy}
+     * @throws IllegalArgumentException if the prices don't use the same currency
+     */
+    public PricingPolicy<T> build() {
+        return new WeeklyTariff<>(defaultPricePerHour, periods);
+    }
+}
@@ -6,4 +6,8 @@ public class ParkingException extends RuntimeException {
         super(message);
     }
 
+    public ParkingException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
 }
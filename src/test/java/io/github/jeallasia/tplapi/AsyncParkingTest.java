@@ -0,0 +1,123 @@
+package io.github.jeallasia.tplapi;
+
+import io.github.jeallasia.tplapi.exception.ParkingException;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class AsyncParkingTest extends TestHelper {
+
+    private AsyncParking<TestCar> build(int nbrSlots) {
+        return Parking.<TestCar>builder().setPricingPolicy(FIVE_PER_HOUR_STARTED_ONE_FIXED)
+                .addSlots(isGAS, nbrSlots)
+                .buildAsync();
+    }
+
+    @Test
+    public void checkInCheckOut() throws Exception {
+        try (AsyncParking<TestCar> parking = build(1)) {
+            TestCar gas = gas(), otherGas = gas();
+            CompletableFuture<CheckInResult<TestCar>> checkIn = parking.checkIn(gas, dateTime6h5min);
+            CompletableFuture<CheckInResult<TestCar>> rejected = parking.checkIn(otherGas, dateTime6h5min);
+            CompletableFuture<CheckInResult<TestCar>> twice = parking.checkIn(gas, dateTime6h55min);
+            CompletableFuture<CheckOutResult<TestCar>> checkOut = parking.checkOut(gas, dateTime6h55min);
+            // Requests are executed in order
+            assertEquals("0", checkIn.get(10, TimeUnit.SECONDS).geSlot().getId());
+            assertFalse(rejected.get(10, TimeUnit.SECONDS).isSuccessful());
+            try {
+                twice.get(10, TimeUnit.SECONDS);
+                fail();
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof ParkingException);
+            }
+            assertEquals(FIVE.add(ONE), checkOut.get(10, TimeUnit.SECONDS).getPrice());
+            assertEquals(1, parking.getParking().getAvailableSizeFor(gas));
+        }
+    }
+
+    @Test
+    public void batch() throws Exception {
+        try (AsyncParking<TestCar> parking = build(10)) {
+            List<TestCar> cars = gasList(5);
+            cars.add(cars.get(0));
+            List<CompletableFuture<CheckInResult<TestCar>>> checkIns = new ArrayList<>();
+            for (TestCar car : cars) checkIns.add(parking.checkIn(car, dateTime6h5min));
+            for (int i = 0; i < 5; i++) {
+                assertEquals(String.valueOf(i), checkIns.get(i).get(10, TimeUnit.SECONDS).geSlot().getId());
+            }
+            // The duplicated car fails alone
+            assertTrue(checkIns.get(5).handle((result, e) -> e).get(10, TimeUnit.SECONDS) instanceof ParkingException);
+            assertEquals(5, parking.getParking().getAvailableSizeFor(cars.get(0)));
+        }
+    }
+
+    @Test
+    public void batchCheckOutFailure() throws Exception {
+        try (AsyncParking<TestCar> parking = Parking.<TestCar>builder().setPricingPolicy(slot -> {
+                    if (slot.getCar().isChargeNotRequired()) throw new IllegalStateException("No tariff");
+                    return FIVE;
+                })
+                .addSlots(isE20, 3)
+                .buildAsync()) {
+            List<TestCar> cars = new ArrayList<>(Arrays.asList(e20(), e20ChargeNotRequired(), e20()));
+            for (TestCar car : cars) parking.checkIn(car, dateTime6h5min);
+            List<CompletableFuture<CheckOutResult<TestCar>>> checkOuts = new ArrayList<>();
+            for (TestCar car : cars) checkOuts.add(parking.checkOut(car, dateTime6h55min));
+            // Only the car that can't be priced fails, the other ones get their price
+            assertEquals(FIVE, checkOuts.get(0).get(10, TimeUnit.SECONDS).getPrice());
+            assertTrue(checkOuts.get(1).handle((result, e) -> e).get(10, TimeUnit.SECONDS) instanceof IllegalStateException);
+            assertEquals(FIVE, checkOuts.get(2).get(10, TimeUnit.SECONDS).getPrice());
+            assertEquals(3, parking.getParking().getAvailableSize());
+        }
+    }
+
+    @Test
+    public void concurrentCallers() throws Exception {
+        int nbrThreads = 4, nbrCars = 500;
+        ExecutorService executor = Executors.newFixedThreadPool(nbrThreads);
+        try (AsyncParking<TestCar> parking = build(nbrThreads * nbrCars)) {
+            List<Future<List<CheckInResult<TestCar>>>> futures = new ArrayList<>();
+            for (int t = 0; t < nbrThreads; t++) {
+                futures.add(executor.submit(() -> {
+                    List<CompletableFuture<CheckInResult<TestCar>>> checkIns = new ArrayList<>();
+                    for (TestCar car : gasList(nbrCars)) checkIns.add(parking.checkIn(car, dateTime6h5min));
+                    List<CheckInResult<TestCar>> results = new ArrayList<>();
+                    for (CompletableFuture<CheckInResult<TestCar>> checkIn : checkIns) results.add(checkIn.join());
+                    return results;
+                }));
+            }
+            Set<String> slotIds = new HashSet<>();
+            for (Future<List<CheckInResult<TestCar>>> future : futures) {
+                for (CheckInResult<TestCar> result : future.get(30, TimeUnit.SECONDS)) {
+                    assertTrue(slotIds.add(result.geSlot().getId()));
+                }
+            }
+            assertEquals(nbrThreads * nbrCars, slotIds.size());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void close() throws Exception {
+        AsyncParking<TestCar> parking = build(1);
+        TestCar gas = gas();
+        CompletableFuture<CheckInResult<TestCar>> checkIn = parking.checkIn(gas, dateTime6h5min);
+        parking.close();
+        // Queued requests are executed before closing
+        assertTrue(checkIn.get(10, TimeUnit.SECONDS).isSuccessful());
+        assertTrue(parking.checkOut(gas, dateTime6h55min).isCompletedExceptionally());
+    }
+}
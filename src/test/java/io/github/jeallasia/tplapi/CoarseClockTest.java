@@ -0,0 +1,44 @@
+package io.github.jeallasia.tplapi;
+
+import org.junit.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.junit.Assert.*;
+
+public class CoarseClockTest extends TestHelper {
+
+    @Test
+    public void readSource() {
+        Clock source = Clock.fixed(dateTime6h5min.toInstant(ZoneOffset.UTC), ZoneId.of("Europe/Paris"));
+        try (CoarseClock clock = CoarseClock.of(source, Duration.ofMillis(1))) {
+            assertEquals(source.instant(), clock.instant());
+            assertEquals(source.getZone(), clock.getZone());
+            assertEquals(LocalDateTime.now(source), Timestamps.toLocalDateTime(Timestamps.now(clock)));
+            CoarseClock utc = clock.withZone(ZoneOffset.UTC);
+            assertEquals(dateTime6h5min, Timestamps.toLocalDateTime(Timestamps.now(utc)));
+        }
+    }
+
+    @Test
+    public void tick() throws InterruptedException {
+        try (CoarseClock clock = CoarseClock.systemDefaultZone(Duration.ofMillis(1))) {
+            Instant first = clock.instant();
+            long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+            while (clock.instant().equals(first) && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            assertTrue(clock.instant().isAfter(first));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroResolution() {
+        CoarseClock.systemDefaultZone(Duration.ZERO);
+    }
+}
@@ -0,0 +1,250 @@
+package io.github.jeallasia.tplapi;
+
+import io.github.jeallasia.tplapi.exception.ParkingException;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.money.MonetaryAmount;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+public class ConcurrentParkingTest extends TestHelper {
+
+    private static final int NBR_THREADS = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+    private static final int NBR_ITERATIONS = 2_000;
+
+    private Parking<TestCar> parking;
+
+    @Before
+    public void initialize() {
+        parking = Parking.<TestCar>builder().setPricingPolicy(FIVE_PER_HOUR_STARTED_ONE_FIXED)
+                .setConcurrent(true)
+                .addSlots(isE20, 10)
+                .addSlots(isE50, 10)
+                .addSlots(isGAS, (isE20.or(isE50)).and(isChargeNotRequired), 40)
+                .build();
+    }
+
+    @Test
+    public void builder() {
+        assertTrue(parking instanceof ConcurrentParking);
+        assertEquals(60, parking.getSize());
+    }
+
+    @Test
+    public void checkInCheckOut() {
+        TestCar e20 = e20();
+        CheckInResult<TestCar> checkInResult = parking.checkIn(e20, dateTime6h5min);
+        assertEquals("0", checkInResult.geSlot().getId());
+        assertEquals(FIVE.add(ONE), parking.checkOut(e20, dateTime6h55min).getPrice());
+        e20List(10).forEach(parking::checkIn);
+        CheckInResult<TestCar> alternative = parking.checkIn(e20ChargeNotRequired());
+        assertTrue(alternative.geSlot().getUsingAlternative());
+        assertEquals("20", alternative.geSlot().getId());
+        assertFalse(parking.checkIn(e20()).isSuccessful());
+    }
+
+    @Test
+    public void checkInAllCheckOutAll() {
+        List<TestCar> cars = gasList(45);
+        List<CheckInResult<TestCar>> checkInResults = parking.checkInAll(cars, dateTime6h5min);
+        assertEquals(40, checkInResults.stream().filter(CheckInResult::isSuccessful).count());
+        List<TestCar> parked = cars.subList(0, 40);
+        parking.checkOutAll(parked, dateTime6h55min).forEach(result -> assertEquals(FIVE.add(ONE), result.getPrice()));
+        assertEquals(40, parking.getAvailableSizeFor(gas()));
+    }
+
+    @Test
+    public void checkInCheckOutWithHandle() {
+        SlotHandle<TestCar> handle = new SlotHandle<>();
+        TestCar gas = gas();
+        assertTrue(parking.checkIn(gas, dateTime6h5min, handle));
+        assertEquals("20", handle.getId());
+        assertEquals(FIVE.add(ONE), parking.checkOut(gas, dateTime6h55min, handle));
+        assertEquals(dateTime6h55min, handle.getOutgoingDateTime());
+        assertEquals(40, parking.getAvailableSizeFor(gas));
+    }
+
+    @Test
+    public void invalidTierKeepsSlot() {
+        RankedPredicate<TestCar> tooDeep = car -> PredicateWithAlt.MAX_TIER + 1;
+        Parking<TestCar> parking = Parking.<TestCar>builder().setPricingPolicy(FIVE_PER_HOUR_STARTED_ONE_FIXED)
+                .setConcurrent(true)
+                .addSlots(tooDeep, 1)
+                .build();
+        try {
+            parking.checkIn(gas(), dateTime6h5min);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // The tier can't be stored
+        }
+        assertEquals(1, parking.getAvailableSize());
+    }
+
+    @Test
+    public void checkInDuringCheckOut() throws Exception {
+        CountDownLatch pricing = new CountDownLatch(1);
+        CountDownLatch priced = new CountDownLatch(1);
+        Parking<TestCar> parking = Parking.<TestCar>builder().setPricingPolicy(slot -> {
+                    pricing.countDown();
+                    try {
+                        priced.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return FIVE;
+                })
+                .setConcurrent(true)
+                .addSlots(isGAS, 2)
+                .build();
+        TestCar car = gas();
+        parking.checkIn(car, dateTime6h5min);
+        List<String> events = new CopyOnWriteArrayList<>();
+        parking.addListener(new SlotListener<TestCar>() {
+            @Override
+            public void checkedIn(ParkingSlot<TestCar> slot) {
+                events.add("in");
+            }
+
+            @Override
+            public void checkedOut(ParkingSlot<TestCar> slot, MonetaryAmount price) {
+                events.add("out");
+            }
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<CheckOutResult<TestCar>> checkOut = executor.submit(() -> parking.checkOut(car, dateTime6h55min));
+            assertTrue(pricing.await(10, TimeUnit.SECONDS));
+            Future<CheckInResult<TestCar>> checkIn = executor.submit(() -> parking.checkIn(car, dateTime6h55min));
+            Thread.sleep(100);
+            // The car can't be checked in again until its check out is notified
+            assertFalse(checkIn.isDone());
+            priced.countDown();
+            assertEquals(FIVE, checkOut.get(10, TimeUnit.SECONDS).getPrice());
+            assertTrue(checkIn.get(10, TimeUnit.SECONDS).isSuccessful());
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(Arrays.asList("out", "in"), events);
+    }
+
+    @Test(expected = ParkingException.class)
+    public void checkInTwice() {
+        TestCar e20 = e20();
+        parking.checkIn(e20);
+        parking.checkIn(e20);
+    }
+
+    @Test(expected = ParkingException.class)
+    public void checkOutUnknownCar() {
+        parking.checkOut(e20());
+    }
+
+    /**
+     * Many threads check in and out their own cars, more cars than slots, checking that a slot is never
+     * allocated to two cars at the same time.
+     */
+    @Test
+    public void noDoubleAllocation() throws Exception {
+        ConcurrentHashMap<String, TestCar> occupied = new ConcurrentHashMap<>();
+        AtomicInteger violations = new AtomicInteger();
+        runConcurrently(NBR_THREADS, () -> {
+            List<TestCar> cars = e20ChargeNotRequiredList(5);
+            cars.addAll(gasList(5));
+            Map<TestCar, String> slotIds = new IdentityHashMap<>();
+            for (int i = 0; i < NBR_ITERATIONS; i++) {
+                for (TestCar car : cars) {
+                    CheckInResult<TestCar> result = parking.checkIn(car, dateTime6h5min);
+                    if (result.isSuccessful()) {
+                        slotIds.put(car, result.geSlot().getId());
+                        if (occupied.putIfAbsent(result.geSlot().getId(), car) != null) violations.incrementAndGet();
+                    }
+                }
+                for (Map.Entry<TestCar, String> entry : slotIds.entrySet()) {
+                    // The slot is still allocated to this car until the check out
+                    if (!occupied.remove(entry.getValue(), entry.getKey())) violations.incrementAndGet();
+                    if (!parking.checkOut(entry.getKey(), dateTime6h55min).getSlot().getId().equals(entry.getValue())) {
+                        violations.incrementAndGet();
+                    }
+                }
+                slotIds.clear();
+            }
+        });
+        assertEquals(0, violations.get());
+        assertEquals(40, parking.getAvailableSizeFor(gas()));
+        assertEquals(10, parking.getAvailableSizeFor(e20()));
+    }
+
+    /**
+     * Many threads try to check out the same cars, only one of them must succeed for each car.
+     */
+    @Test
+    public void noDoubleCheckOut() throws Exception {
+        List<TestCar> cars = gasList(40);
+        cars.forEach(car -> assertTrue(parking.checkIn(car, dateTime6h5min).isSuccessful()));
+        AtomicInteger checkedOut = new AtomicInteger();
+        runConcurrently(NBR_THREADS, () -> {
+            for (TestCar car : cars) {
+                try {
+                    parking.checkOut(car, dateTime6h55min);
+                    checkedOut.incrementAndGet();
+                } catch (ParkingException e) {
+                    // Already checked out by another thread
+                }
+            }
+        });
+        assertEquals(cars.size(), checkedOut.get());
+        assertEquals(40, parking.getAvailableSizeFor(gas()));
+    }
+
+    /**
+     * Cars checking in and out concurrently on a large parking leave it empty (the throughput is measured by
+     * ConcurrentParkingBenchmark).
+     */
+    @Test
+    public void largeParking() throws Exception {
+        Parking<TestCar> large = Parking.<TestCar>builder().setPricingPolicy(FIVE_PER_HOUR_STARTED_ONE_FIXED)
+                .setConcurrent(true)
+                .addSlots(isGAS, 1_000)
+                .addSlots(isE20, 1_000)
+                .build();
+        runConcurrently(4, () -> {
+            List<TestCar> cars = gasList(10);
+            for (int i = 0; i < NBR_ITERATIONS; i++) {
+                cars.forEach(car -> large.checkIn(car, dateTime6h5min));
+                cars.forEach(car -> large.checkOut(car, dateTime6h55min));
+            }
+        });
+        assertEquals(1_000, large.getAvailableSizeFor(gas()));
+    }
+
+    private static void runConcurrently(int nbrThreads, Runnable task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(nbrThreads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = IntStream.range(0, nbrThreads).mapToObj(i -> executor.submit(() -> {
+                start.await();
+                task.run();
+                return null;
+            })).collect(Collectors.toList());
+            start.countDown();
+            for (Future<?> future : futures) future.get(1, TimeUnit.MINUTES);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package io.github.jeallasia.tplapi;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ParkingEventTest extends TestHelper {
+
+    /**
+     * Subscriber requesting the events one by one
+     */
+    private static class Collector<T> implements Flow.Subscriber<ParkingEvent<T>> {
+        private final List<ParkingEvent<T>> events = new CopyOnWriteArrayList<>();
+        private final CompletableFuture<Void> completed = new CompletableFuture<>();
+        private Flow.Subscription subscription;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(ParkingEvent<T> item) {
+            events.add(item);
+            subscription.request(1);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            completed.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            completed.complete(null);
+        }
+    }
+
+    private void subscribe(boolean concurrent) throws Exception {
+        AtomicInteger pricings = new AtomicInteger();
+        Parking<TestCar> parking = Parking.<TestCar>builder().setPricingPolicy(slot -> {
+                    pricings.incrementAndGet();
+                    return FIVE_PER_HOUR_STARTED_ONE_FIXED.computePrice(slot);
+                })
+                .setConcurrent(concurrent)
+                .addSlots(isGAS, 1)
+                .build();
+        Collector<TestCar> collector = new Collector<>(), other = new Collector<>();
+        parking.subscribe(collector);
+        parking.subscribe(other);
+        TestCar gas = gas(), otherGas = gas();
+        parking.checkIn(gas, dateTime6h5min);
+        parking.checkIn(otherGas, dateTime6h5min);
+        parking.checkOut(gas, dateTime6h55min, new SlotHandle<>());
+        parking.close();
+        collector.completed.get(10, TimeUnit.SECONDS);
+        other.completed.get(10, TimeUnit.SECONDS);
+        List<ParkingEvent<TestCar>> events = collector.events;
+        assertEquals(3, events.size());
+        assertEquals(ParkingEvent.Type.CHECK_IN, events.get(0).getType());
+        assertEquals(gas, events.get(0).getCar());
+        assertEquals("0", events.get(0).getSlot().getId());
+        assertNull(events.get(0).getPrice());
+        assertEquals(ParkingEvent.Type.REJECTED, events.get(1).getType());
+        assertEquals(otherGas, events.get(1).getCar());
+        assertNull(events.get(1).getSlot());
+        assertEquals(ParkingEvent.Type.CHECK_OUT, events.get(2).getType());
+        // The event keeps a copy of the slot, already freed
+        assertEquals(gas, events.get(2).getSlot().getCar());
+        assertEquals(dateTime6h55min, events.get(2).getSlot().getOutgoingDateTime());
+        assertEquals(FIVE.add(ONE), events.get(2).getPrice());
+        // Priced once by the check out, whatever the number of subscribers
+        assertSame(events.get(2).getPrice(), other.events.get(2).getPrice());
+        assertEquals(1, pricings.get());
+    }
+
+    @Test
+    public void subscribe() throws Exception {
+        subscribe(false);
+    }
+
+    @Test
+    public void subscribeConcurrent() throws Exception {
+        subscribe(true);
+    }
+
+    @Test
+    public void slowSubscriberDoesNotBlock() throws Exception {
+        Parking<TestCar> parking = Parking.<TestCar>builder().setPricingPolicy(FIVE_PER_HOUR_STARTED_ONE_FIXED)
+                .addSlots(isGAS, 1)
+                .build();
+        CountDownLatch subscribed = new CountDownLatch(1);
+        parking.subscribe(new Flow.Subscriber<ParkingEvent<TestCar>>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                // Never requests any event
+                subscribed.countDown();
+            }
+
+            @Override
+            public void onNext(ParkingEvent<TestCar> item) {
+                fail();
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+        assertTrue(subscribed.await(10, TimeUnit.SECONDS));
+        List<TestCar> cars = gasList(1);
+        for (int i = 0; i < 2 * EventFeed.BUFFER_SIZE; i++) {
+            parking.checkInAll(cars, dateTime6h5min);
+            parking.checkOutAll(cars, dateTime6h55min);
+        }
+        parking.close();
+    }
+}
@@ -0,0 +1,317 @@
+package io.github.jeallasia.tplapi;
+
+import io.github.jeallasia.tplapi.exception.ParkingException;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.*;
+
+public class ParkingJournalTest extends TestHelper {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path file;
+    private final Map<String, TestCar> registry = new HashMap<>();
+    private final CarCodec<TestCar> codec = CarCodec.ofKey(TestCar::toString, registry::get);
+
+    @Before
+    public void initialize() throws IOException {
+        file = folder.getRoot().toPath().resolve("parking.journal");
+    }
+
+    private Parking<TestCar> build(boolean concurrent) {
+        return build(concurrent, 100_000);
+    }
+
+    private Parking<TestCar> build(boolean concurrent, int snapshotEvery) {
+        return Parking.<TestCar>builder().setPricingPolicy(FIVE_PER_HOUR_STARTED_ONE_FIXED)
+                .setConcurrent(concurrent)
+                .setJournal(file, codec, Duration.ofMillis(1), snapshotEvery)
+                .addSlots(isE20, 2)
+                .addSlots(isGAS, isE20, 2)
+                .build();
+    }
+
+    private TestCar register(TestCar car) {
+        registry.put(car.toString(), car);
+        return car;
+    }
+
+    private void restore(boolean concurrent) {
+        TestCar e20 = register(e20()), otherE20 = register(e20()), gas = register(gas()), alternative = register(e20());
+        try (Parking<TestCar> parking = build(concurrent)) {
+            parking.checkIn(e20, dateTime6h5min);
+            parking.checkIn(otherE20, dateTime6h5min);
+            parking.checkIn(gas, dateTime6h5min);
+            parking.checkIn(alternative, dateTime6h5min);
+            parking.checkOut(otherE20, dateTime6h55min);
+        }
+        try (Parking<TestCar> parking = build(concurrent)) {
+            assertEquals(1, parking.getAvailableSizeCompatibleFor(e20));
+            assertEquals(0, parking.getAvailableSizeFor(gas));
+            // Restored cars can be checked out, and are not checked in twice
+            CheckOutResult<TestCar> checkOutResult = parking.checkOut(alternative, dateTime6h55min);
+            assertEquals(dateTime6h5min, checkOutResult.getSlot().getIncomingDateTime());
+            assertTrue(checkOutResult.getSlot().getUsingAlternative());
+            assertEquals("3", checkOutResult.getSlot().getId());
+            assertEquals(FIVE.add(ONE), checkOutResult.getPrice());
+            try {
+                parking.checkIn(gas, dateTime6h55min);
+                fail();
+            } catch (ParkingException e) {
+                // Expected
+            }
+            // The freed slots are allocated again, by rank
+            assertEquals("1", parking.checkIn(otherE20, dateTime6h55min).geSlot().getId());
+            assertEquals("3", parking.checkIn(register(e20()), dateTime6h55min).geSlot().getId());
+        }
+        try (Parking<TestCar> parking = build(concurrent)) {
+            assertEquals(0, parking.getAvailableSizeCompatibleFor(e20));
+            assertEquals(dateTime6h5min, parking.checkOut(gas, dateTime6h55min).getSlot().getIncomingDateTime());
+        }
+    }
+
+    @Test
+    public void restore() {
+        restore(false);
+    }
+
+    @Test
+    public void restoreConcurrent() {
+        restore(true);
+    }
+
+    @Test
+    public void replayIgnoresTruncatedRecord() throws IOException {
+        TestCar e20 = register(e20()), otherE20 = register(e20());
+        try (Parking<TestCar> parking = build(false)) {
+            parking.checkIn(e20, dateTime6h5min);
+            parking.checkIn(otherE20, dateTime6h5min);
+        }
+        // A crash while writing the last record
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+        try (Parking<TestCar> parking = build(false)) {
+            assertEquals(3, parking.getAvailableSizeCompatibleFor(e20));
+            parking.checkOut(e20, dateTime6h55min);
+            parking.checkIn(otherE20, dateTime6h55min);
+        }
+        try (Parking<TestCar> parking = build(false)) {
+            assertEquals(dateTime6h55min, parking.checkOut(otherE20, dateTime6h55min).getSlot().getIncomingDateTime());
+        }
+    }
+
+    @Test(expected = ParkingException.class)
+    public void notAJournal() throws IOException {
+        Files.write(file, "not a journal".getBytes());
+        build(false);
+    }
+
+    @Test
+    public void compaction() throws IOException, InterruptedException {
+        TestCar e20 = register(e20());
+        List<TestCar> cars = e20List(1);
+        try (Parking<TestCar> parking = build(false, 100)) {
+            parking.checkIn(e20, dateTime6h5min);
+            long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+            long size = Long.MAX_VALUE;
+            for (int i = 0; size > 100 && System.nanoTime() < deadline; i++) {
+                parking.checkInAll(cars, dateTime6h5min);
+                parking.checkOutAll(cars, dateTime6h55min);
+                if (i % 100 == 99) {
+                    Thread.sleep(5);
+                    size = Files.size(file);
+                }
+            }
+            // Only the car still in is kept
+            assertTrue(size <= 100);
+        }
+        try (Parking<TestCar> parking = build(false)) {
+            assertEquals(3, parking.getAvailableSizeCompatibleFor(e20));
+            parking.checkOut(e20, dateTime6h55min);
+        }
+    }
+
+    /**
+     * Channel whose writes fail once {@link FailingChannel#fail} is set
+     */
+    private static final class FailingChannel extends FileChannel {
+
+        private final FileChannel delegate;
+        private volatile boolean fail = false;
+
+        private FailingChannel(FileChannel delegate) {
+            this.delegate = delegate;
+        }
+
+        private void checkFail() throws IOException {
+            if (fail) throw new IOException("Disk full");
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            return delegate.read(dst);
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+            return delegate.read(dsts, offset, length);
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            checkFail();
+            return delegate.write(src);
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            checkFail();
+            return delegate.write(srcs, offset, length);
+        }
+
+        @Override
+        public long position() throws IOException {
+            return delegate.position();
+        }
+
+        @Override
+        public FileChannel position(long newPosition) throws IOException {
+            delegate.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return delegate.size();
+        }
+
+        @Override
+        public FileChannel truncate(long size) throws IOException {
+            delegate.truncate(size);
+            return this;
+        }
+
+        @Override
+        public void force(boolean metaData) throws IOException {
+            checkFail();
+            delegate.force(metaData);
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            return delegate.transferTo(position, count, target);
+        }
+
+        @Override
+        public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+            checkFail();
+            return delegate.transferFrom(src, position, count);
+        }
+
+        @Override
+        public int read(ByteBuffer dst, long position) throws IOException {
+            return delegate.read(dst, position);
+        }
+
+        @Override
+        public int write(ByteBuffer src, long position) throws IOException {
+            checkFail();
+            return delegate.write(src, position);
+        }
+
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+            return delegate.map(mode, position, size);
+        }
+
+        @Override
+        public FileLock lock(long position, long size, boolean shared) throws IOException {
+            return delegate.lock(position, size, shared);
+        }
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+            return delegate.tryLock(position, size, shared);
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException {
+            delegate.close();
+        }
+    }
+
+    private void writeFailure(boolean concurrent) throws InterruptedException {
+        Parking<TestCar> parking = Parking.<TestCar>builder().setPricingPolicy(FIVE_PER_HOUR_STARTED_ONE_FIXED)
+                .setConcurrent(concurrent)
+                .addSlots(isE20, 2)
+                .build();
+        List<FailingChannel> channels = new CopyOnWriteArrayList<>();
+        ParkingJournal.open(file, codec, Duration.ofMillis(1), 100_000, parking, f -> {
+            FailingChannel channel = new FailingChannel(FileChannel.open(f, StandardOpenOption.WRITE, StandardOpenOption.APPEND));
+            channels.add(channel);
+            return channel;
+        });
+        TestCar e20 = register(e20()), other = register(e20());
+        parking.checkIn(e20, dateTime6h5min);
+        channels.get(0).fail = true;
+        // The failure is seen once the flusher tried to write
+        ParkingException failure = null;
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (failure == null && System.nanoTime() < deadline) {
+            try {
+                parking.checkIn(other, dateTime6h5min);
+                parking.checkOut(other, dateTime6h55min);
+            } catch (ParkingException e) {
+                failure = e;
+            }
+            Thread.sleep(1);
+        }
+        assertNotNull(failure);
+        assertTrue(failure.getCause() instanceof IOException);
+        // Refused without changing the parking
+        long available = parking.getAvailableSizeFor(e20);
+        try {
+            parking.checkOut(e20, dateTime6h55min);
+            fail();
+        } catch (ParkingException e) {
+            assertEquals(available, parking.getAvailableSizeFor(e20));
+        }
+        try {
+            parking.close();
+            fail();
+        } catch (ParkingException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void writeFailure() throws InterruptedException {
+        writeFailure(false);
+    }
+
+    @Test
+    public void writeFailureConcurrent() throws InterruptedException {
+        writeFailure(true);
+    }
+}
@@ -0,0 +1,99 @@
+package io.github.jeallasia.tplapi;
+
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ParkingMetricsTest extends TestHelper {
+
+    private void metrics(boolean concurrent) {
+        PredicateWithAlt<TestCar> e20Slots = PredicateWithAlt.buildAlt(isE20);
+        PredicateWithAlt<TestCar> gasSlots = PredicateWithAlt.buildAlt(isGAS, isChargeNotRequired);
+        Parking<TestCar> parking = Parking.<TestCar>builder().setPricingPolicy(FIVE_PER_HOUR_STARTED_ONE_FIXED)
+                .setConcurrent(concurrent)
+                .setMetrics(true)
+                .addSlots(e20Slots, 1)
+                .addSlots(gasSlots, 2)
+                .build();
+        TestCar e20 = e20(), e20ChargeNotRequired = e20ChargeNotRequired(), gas = gas(), otherGas = gas();
+        parking.checkIn(e20, dateTime6h5min);
+        parking.checkIn(e20ChargeNotRequired, dateTime6h5min, new SlotHandle<>());
+        parking.checkIn(gas, dateTime6h5min);
+        parking.checkIn(otherGas, dateTime6h5min);
+        parking.checkOut(e20, dateTime6h55min);
+        ParkingMetrics<TestCar> metrics = parking.getMetrics();
+        assertEquals(3, metrics.getCheckInCount());
+        assertEquals(1, metrics.getAlternativeCount());
+        assertEquals(1, metrics.getRejectedCount());
+        assertEquals(1, metrics.getCheckOutCount());
+        assertEquals(5, metrics.getLockWait().getCount());
+        assertEquals(5, metrics.getServiceTime().getCount());
+        assertTrue(metrics.getServiceTime().getValueAtPercentile(100).compareTo(Duration.ZERO) > 0);
+        Map<PredicateWithAlt<TestCar>, Integer> occupancy = metrics.getOccupancy();
+        assertEquals(Arrays.asList(e20Slots, gasSlots), Arrays.asList(occupancy.keySet().toArray()));
+        assertEquals(0, (int) occupancy.get(e20Slots));
+        assertEquals(2, (int) occupancy.get(gasSlots));
+    }
+
+    @Test
+    public void metrics() {
+        metrics(false);
+    }
+
+    @Test
+    public void metricsConcurrent() {
+        metrics(true);
+    }
+
+    @Test
+    public void metricsBatch() {
+        Parking<TestCar> parking = Parking.<TestCar>builder().setPricingPolicy(FIVE_PER_HOUR_STARTED_ONE_FIXED)
+                .setMetrics(true)
+                .addSlots(isGAS, 3)
+                .build();
+        parking.checkInAll(gasList(3), dateTime6h5min);
+        ParkingMetrics<TestCar> metrics = parking.getMetrics();
+        assertEquals(3, metrics.getCheckInCount());
+        // One sample for the batch
+        assertEquals(1, metrics.getLockWait().getCount());
+        assertEquals(1, metrics.getServiceTime().getCount());
+    }
+
+    @Test
+    public void metricsDisabled() {
+        Parking<TestCar> parking = Parking.<TestCar>builder().setPricingPolicy(FIVE_PER_HOUR_STARTED_ONE_FIXED)
+                .addSlots(isGAS, 1)
+                .build();
+        TestCar gas = gas();
+        parking.checkIn(gas, dateTime6h5min);
+        ParkingMetrics<TestCar> metrics = parking.getMetrics();
+        assertEquals(0, metrics.getCheckInCount());
+        assertEquals(0, metrics.getServiceTime().getCount());
+        assertEquals(Duration.ZERO, metrics.getServiceTime().getMean());
+        assertEquals(1, (int) metrics.getOccupancy().values().iterator().next());
+    }
+
+    @Test
+    public void histogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) histogram.record(i * 1000);
+        assertEquals(100, histogram.getCount());
+        assertEquals(Duration.ofNanos(50_500), histogram.getMean());
+        // Values are rounded up to the highest value of their bucket, with an error of less than 12.5%
+        long median = histogram.getValueAtPercentile(50).toNanos();
+        assertTrue(median >= 50_000 && median < 50_000 * 1.125);
+        long max = histogram.getValueAtPercentile(100).toNanos();
+        assertTrue(max >= 100_000 && max < 100_000 * 1.125);
+        histogram.record(3);
+        assertEquals(Duration.ofNanos(3), histogram.getValueAtPercentile(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void histogramInvalidPercentile() {
+        new LatencyHistogram().getValueAtPercentile(101);
+    }
+}
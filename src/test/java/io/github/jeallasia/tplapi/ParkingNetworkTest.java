@@ -0,0 +1,189 @@
+package io.github.jeallasia.tplapi;
+
+import io.github.jeallasia.tplapi.exception.ParkingException;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ParkingNetworkTest extends TestHelper {
+
+    private static Parking<TestCar> site(int nbrE50, int nbrGAS, boolean concurrent) {
+        ParkingBuilder<TestCar> builder = Parking.<TestCar>builder().setPricingPolicy(FIVE_PER_HOUR_STARTED_ONE_FIXED)
+                .setConcurrent(concurrent)
+                .addSlots(isGAS, isE50, nbrGAS);
+        if (nbrE50 > 0) builder.addSlots(isE50, nbrE50);
+        return builder.build();
+    }
+
+    @Test
+    public void routing() {
+        ParkingNetwork<TestCar> network = ParkingNetwork.<TestCar>builder()
+                .addSite("north", site(0, 3, false))
+                .addSite("south", site(1, 1, false))
+                .build();
+        assertEquals(5, network.getSize());
+        assertEquals(5, network.getAvailableSizeCompatibleFor(e50()));
+        // Preferred slots first, even if another site has more compatible slots
+        TestCar e50 = e50();
+        CheckInResult<TestCar> result = network.checkIn(e50, dateTime6h5min);
+        assertEquals("south", network.getSiteOf(e50));
+        assertEquals(0, result.getTier());
+        // Then the site having the most free compatible slots
+        TestCar other = e50();
+        network.checkIn(other, dateTime6h5min);
+        assertEquals("north", network.getSiteOf(other));
+        assertEquals(3, network.getAvailableSize());
+        try {
+            network.checkIn(e50, dateTime6h5min);
+            fail();
+        } catch (ParkingException e) {
+            // Already in the network
+        }
+        assertEquals(FIVE.add(ONE), network.checkOut(e50, dateTime6h55min).getPrice());
+        assertNull(network.getSiteOf(e50));
+        assertEquals(1, network.getSites().get("south").getAvailableSizeFor(e50));
+    }
+
+    @Test
+    public void routingByTier() {
+        for (boolean classified : new boolean[]{false, true}) {
+            ParkingBuilder<TestCar> north = Parking.<TestCar>builder().setPricingPolicy(FIVE_PER_HOUR_STARTED_ONE_FIXED)
+                    .addSlots(PredicateWithAlt.buildRanked(isGAS, c -> false, c -> false, isE50), 3);
+            ParkingBuilder<TestCar> south = Parking.<TestCar>builder().setPricingPolicy(FIVE_PER_HOUR_STARTED_ONE_FIXED)
+                    .addSlots(PredicateWithAlt.buildRanked(isE20, isE50), 1);
+            ParkingBuilder<TestCar> east = Parking.<TestCar>builder().setPricingPolicy(FIVE_PER_HOUR_STARTED_ONE_FIXED)
+                    .addSlots(PredicateWithAlt.buildRanked(isE20, isE50), 2)
+                    .addSlots(PredicateWithAlt.buildRanked(isGAS, isE20, isE50), 5);
+            if (classified) {
+                north.classifyBy(car -> car.carType);
+                south.classifyBy(car -> car.carType);
+                east.classifyBy(car -> car.carType);
+            }
+            ParkingNetwork<TestCar> network = ParkingNetwork.<TestCar>builder()
+                    .addSite("north", north.build())
+                    .addSite("south", south.build())
+                    .addSite("east", east.build())
+                    .build();
+            // The lowest tier first, then the most free slots of this tier (the first site on a tie), whatever the
+            // other tiers
+            List<String> sites = new ArrayList<>();
+            List<Integer> tiers = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                TestCar car = e50();
+                tiers.add(network.checkIn(car, dateTime6h5min).getTier());
+                sites.add(network.getSiteOf(car));
+            }
+            assertEquals(Arrays.asList("east", "south", "east", "east", "east", "east", "east", "east"), sites);
+            assertEquals(Arrays.asList(1, 1, 1, 2, 2, 2, 2, 2), tiers);
+            TestCar last = e50();
+            assertEquals(3, network.checkIn(last, dateTime6h5min).getTier());
+            assertEquals("north", network.getSiteOf(last));
+        }
+    }
+
+    @Test
+    public void rejected() {
+        ParkingNetwork<TestCar> network = ParkingNetwork.<TestCar>builder()
+                .addSite("north", site(1, 0, false))
+                .build();
+        network.checkIn(e50(), dateTime6h5min);
+        TestCar rejected = e50();
+        assertFalse(network.checkIn(rejected, dateTime6h5min).isSuccessful());
+        assertNull(network.getSiteOf(rejected));
+        assertFalse(network.checkIn(gas(), dateTime6h5min).isSuccessful());
+    }
+
+    @Test
+    public void leftWithoutNetwork() {
+        for (boolean concurrent : new boolean[]{false, true}) {
+            Parking<TestCar> north = Parking.<TestCar>builder().setPricingPolicy(slot -> {
+                        if (slot.getCar().isChargeNotRequired()) throw new IllegalStateException("No tariff");
+                        return FIVE;
+                    })
+                    .setConcurrent(concurrent)
+                    .addSlots(isE50, 2)
+                    .build();
+            ParkingNetwork<TestCar> network = ParkingNetwork.<TestCar>builder().addSite("north", north).build();
+            // The pricing fails, the car is checked out anyway
+            TestCar unpriced = e50ChargeNotRequired();
+            network.checkIn(unpriced, dateTime6h5min);
+            try {
+                network.checkOut(unpriced, dateTime6h55min);
+                fail();
+            } catch (IllegalStateException e) {
+                // No tariff
+            }
+            assertNull(network.getSiteOf(unpriced));
+            assertTrue(network.checkIn(unpriced, dateTime6h5min).isSuccessful());
+            // Checked out directly on its site
+            TestCar e50 = e50();
+            network.checkIn(e50, dateTime6h5min);
+            north.checkOut(e50, dateTime6h55min);
+            try {
+                network.checkOut(e50, dateTime6h55min);
+                fail();
+            } catch (ParkingException e) {
+                // Not found
+            }
+            assertNull(network.getSiteOf(e50));
+            network.checkIn(e50, dateTime6h5min);
+            north.checkOut(e50, dateTime6h55min);
+            assertTrue(network.checkIn(e50, dateTime6h5min).isSuccessful());
+            assertEquals("north", network.getSiteOf(e50));
+            assertEquals(FIVE, network.checkOut(e50, dateTime6h55min).getPrice());
+        }
+    }
+
+    @Test(expected = ParkingException.class)
+    public void checkOutUnknown() {
+        ParkingNetwork.<TestCar>builder().addSite("north", site(1, 0, false)).build().checkOut(e50(), dateTime6h55min);
+    }
+
+    @Test(expected = ParkingException.class)
+    public void duplicatedSite() {
+        ParkingNetwork.<TestCar>builder().addSite("north", site(1, 0, false)).addSite("north", site(1, 0, false));
+    }
+
+    @Test
+    public void concurrentCheckIns() throws Exception {
+        int nbrThreads = 4, nbrCars = 250;
+        ParkingNetwork<TestCar> network = ParkingNetwork.<TestCar>builder()
+                .addSite("north", site(nbrCars, 0, true))
+                .addSite("south", site(nbrCars, 0, true))
+                .addSite("east", site(nbrCars, 0, false))
+                .build();
+        ExecutorService executor = Executors.newFixedThreadPool(nbrThreads);
+        try {
+            List<Future<List<String>>> futures = new ArrayList<>();
+            for (int t = 0; t < nbrThreads; t++) {
+                futures.add(executor.submit(() -> {
+                    List<String> slots = new ArrayList<>();
+                    for (TestCar car : e50List(nbrCars)) {
+                        CheckInResult<TestCar> result = network.checkIn(car, dateTime6h5min);
+                        if (result.isSuccessful()) slots.add(network.getSiteOf(car) + "/" + result.geSlot().getId());
+                    }
+                    return slots;
+                }));
+            }
+            Set<String> slots = new HashSet<>();
+            for (Future<List<String>> future : futures) {
+                for (String slot : future.get(30, TimeUnit.SECONDS)) assertTrue(slots.add(slot));
+            }
+            // Every slot is taken once, the other cars are rejected
+            assertEquals(3 * nbrCars, slots.size());
+            assertEquals(0, network.getAvailableSize());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
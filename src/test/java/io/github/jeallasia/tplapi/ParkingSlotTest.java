@@ -19,7 +19,8 @@ public class ParkingSlotTest extends TestHelper {
     public void allocate() {
         TestCar car = e20();
         ParkingSlot<TestCar> slot = new ParkingSlot<>("name", c -> true);
-        ParkingSlot<TestCar> allocatedSlot = slot.allocate(car, LocalDateTime.now(), true);
+        slot.occupy(car, LocalDateTime.now(), 1);
+        ParkingSlot<TestCar> allocatedSlot = slot.copy();
         assertEquals(car, allocatedSlot.getCar());
     }
 
@@ -27,9 +28,28 @@ public class ParkingSlotTest extends TestHelper {
     public void computeDuration() {
         ParkingSlot<TestCar> slot = new ParkingSlot<>("name", c -> true);
         assertEquals(Duration.ZERO, slot.computeDuration());
-        slot.allocate(e20(), LocalDateTime.now().minus(Duration.ofMinutes(10)), true);
+        slot.occupy(e20(), LocalDateTime.now().minus(Duration.ofMinutes(10)), 1);
         assertNotEquals(Duration.ZERO, slot.computeDuration());
         assertNotEquals(Duration.ZERO, slot.free(LocalDateTime.now()).computeDuration());
     }
 
+    @Test
+    public void keepDateTimes() {
+        ParkingSlot<TestCar> slot = new ParkingSlot<>("name", c -> true);
+        assertNull(slot.getIncomingDateTime());
+        assertNull(slot.getUsingAlternative());
+        LocalDateTime incoming = LocalDateTime.of(1969, 12, 31, 23, 59, 59, 123_456_789);
+        LocalDateTime outgoing = LocalDateTime.of(2200, 1, 1, 0, 0);
+        slot.occupy(e20(), incoming, 0);
+        assertEquals(incoming, slot.getIncomingDateTime());
+        assertFalse(slot.getUsingAlternative());
+        ParkingSlot<TestCar> usage = slot.free(outgoing);
+        assertEquals(incoming, usage.getIncomingDateTime());
+        assertEquals(outgoing, usage.getOutgoingDateTime());
+        assertEquals(Duration.between(incoming, outgoing), usage.computeDuration());
+        assertTrue(slot.isFree());
+        assertNull(slot.getIncomingDateTime());
+        assertNull(slot.getOutgoingDateTime());
+    }
+
 }
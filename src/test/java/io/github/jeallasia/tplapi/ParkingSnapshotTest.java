@@ -0,0 +1,107 @@
+package io.github.jeallasia.tplapi;
+
+import io.github.jeallasia.tplapi.exception.ParkingException;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ParkingSnapshotTest extends TestHelper {
+
+    private final Map<String, TestCar> registry = new HashMap<>();
+    private final CarCodec<TestCar> codec = CarCodec.ofKey(TestCar::toString, registry::get);
+
+    private ParkingBuilder<TestCar> builder(boolean concurrent, int nbrSlots) {
+        return Parking.<TestCar>builder().setPricingPolicy(FIVE_PER_HOUR_STARTED_ONE_FIXED)
+                .setConcurrent(concurrent)
+                .addSlots(isE20, nbrSlots)
+                .addSlots(isGAS, isE20, nbrSlots);
+    }
+
+    private List<TestCar> register(List<TestCar> cars) {
+        for (TestCar car : cars) registry.put(car.toString(), car);
+        return cars;
+    }
+
+    private byte[] snapshot(Parking<TestCar> parking) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        parking.snapshot(out, codec);
+        return out.toByteArray();
+    }
+
+    private void snapshotRestore(boolean concurrent) throws IOException {
+        List<TestCar> cars = register(e20List(3));
+        Parking<TestCar> parking = builder(concurrent, 2).build();
+        parking.checkInAll(cars, dateTime6h5min);
+        parking.checkOut(cars.get(0), dateTime6h55min);
+        byte[] snapshot = snapshot(parking);
+        Parking<TestCar> restored = builder(!concurrent, 2).restore(new ByteArrayInputStream(snapshot), codec).build();
+        assertEquals(2, restored.getAvailableSizeCompatibleFor(cars.get(0)));
+        CheckOutResult<TestCar> checkOutResult = restored.checkOut(cars.get(2), dateTime6h55min);
+        assertEquals("2", checkOutResult.getSlot().getId());
+        assertTrue(checkOutResult.getSlot().getUsingAlternative());
+        assertEquals(dateTime6h5min, checkOutResult.getSlot().getIncomingDateTime());
+        assertEquals(FIVE.add(ONE), checkOutResult.getPrice());
+        assertEquals("0", restored.checkIn(cars.get(0), dateTime6h55min).geSlot().getId());
+        assertEquals("2", restored.checkIn(cars.get(2), dateTime6h55min).geSlot().getId());
+        // Same occupancy, same snapshot
+        parking.checkOut(cars.get(2), dateTime6h55min);
+        parking.checkIn(cars.get(0), dateTime6h55min);
+        parking.checkIn(cars.get(2), dateTime6h55min);
+        assertArrayEquals(snapshot(parking), snapshot(restored));
+    }
+
+    @Test
+    public void snapshotRestore() throws IOException {
+        snapshotRestore(false);
+    }
+
+    @Test
+    public void snapshotRestoreConcurrent() throws IOException {
+        snapshotRestore(true);
+    }
+
+    @Test
+    public void snapshotRestoreLargeParking() throws IOException {
+        List<TestCar> cars = register(e20List(150_000));
+        Parking<TestCar> parking = builder(true, 100_000).build();
+        parking.checkInAll(cars, dateTime6h5min);
+        Parking<TestCar> restored = builder(true, 100_000)
+                .restore(new ByteArrayInputStream(snapshot(parking)), codec).build();
+        assertEquals(50_000, restored.getAvailableSizeCompatibleFor(cars.get(0)));
+        assertEquals("149999", restored.checkOut(cars.get(149_999), dateTime6h55min).getSlot().getId());
+    }
+
+    @Test(expected = ParkingException.class)
+    public void restoreOtherParking() throws IOException {
+        byte[] snapshot = snapshot(builder(false, 2).build());
+        builder(false, 3).restore(new ByteArrayInputStream(snapshot), codec).build();
+    }
+
+    @Test(expected = ParkingException.class)
+    public void snapshotIdTooLong() throws IOException {
+        char[] id = new char[0x10000];
+        Arrays.fill(id, 'a');
+        Parking<TestCar> parking = Parking.<TestCar>builder().setPricingPolicy(FIVE_PER_HOUR_STARTED_ONE_FIXED)
+                .addSlot(new String(id), isE20)
+                .build();
+        parking.checkIn(register(e20List(1)).get(0), dateTime6h5min);
+        snapshot(parking);
+    }
+
+    @Test(expected = ParkingException.class)
+    public void restoreTruncated() throws IOException {
+        List<TestCar> cars = register(e20List(3));
+        Parking<TestCar> parking = builder(false, 2).build();
+        parking.checkInAll(cars, dateTime6h5min);
+        byte[] snapshot = snapshot(parking);
+        builder(false, 2).restore(new ByteArrayInputStream(Arrays.copyOf(snapshot, snapshot.length - 1)), codec).build();
+    }
+}
@@ -1,13 +1,23 @@
 package io.github.jeallasia.tplapi;
 
+import com.sun.management.ThreadMXBean;
+import io.github.jeallasia.tplapi.exception.ParkingException;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
+import java.lang.management.ManagementFactory;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
 
 import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
 
 public class ParkingTest extends TestHelper {
 
@@ -48,6 +58,22 @@ public class ParkingTest extends TestHelper {
         assertFalse(slot.getUsingAlternative());
     }
 
+    @Test
+    public void checkInCheckOutWithClock() {
+        Clock clock = Clock.fixed(dateTime6h55min.toInstant(ZoneOffset.UTC), ZoneOffset.UTC);
+        Parking<TestCar> parking = Parking.<TestCar>builder().setPricingPolicy(FIVE_PER_HOUR_STARTED_ONE_FIXED)
+                .setClock(clock)
+                .addSlots(isGAS, 2)
+                .build();
+        ParkingSlot<TestCar> slot = parking.checkIn(gas, dateTime6h5min).geSlot();
+        // The car is still in, its duration is computed using the clock of the parking
+        assertEquals(duration50min, slot.computeDuration(clock));
+        assertEquals(dateTime6h55min, parking.checkIn(gas()).geSlot().getIncomingDateTime());
+        CheckOutResult<TestCar> checkOutResult = parking.checkOut(gas);
+        assertEquals(dateTime6h55min, checkOutResult.getSlot().getOutgoingDateTime());
+        assertEquals(FIVE.add(ONE), checkOutResult.getPrice());
+    }
+
     @Test
     public void testCheckInResultFailed() {
         // Not managed car
@@ -208,10 +234,205 @@ public class ParkingTest extends TestHelper {
         parking.checkOut(e20, dateTime6h5min);
     }
 
+    @Test
+    public void testCheckInFirstFreeSlotAcrossPolicies() {
+        PredicateWithAlt<TestCar> e20OrE50 = PredicateWithAlt.buildAlt(isE20.or(isE50));
+        Parking<TestCar> mixed = Parking.<TestCar>builder().setPricingPolicy(FIVE_PER_HOUR_STARTED_ONE_FIXED)
+                .addSlot(isGAS, isChargeNotRequired)
+                .addSlot(e20OrE50)
+                .addSlot(isE20)
+                .addSlot(e20OrE50)
+                .build();
+        TestCar first = e20ChargeNotRequired();
+        TestCar second = e20ChargeNotRequired();
+        assertEquals("1", mixed.checkIn(first, dateTime6h5min).geSlot().getId());
+        assertEquals("2", mixed.checkIn(second, dateTime6h5min).geSlot().getId());
+        assertEquals("3", mixed.checkIn(e20(), dateTime6h5min).geSlot().getId());
+        // No more preferred slot, the alternative one is used
+        CheckInResult<TestCar> alternative = mixed.checkIn(e20ChargeNotRequired(), dateTime6h5min);
+        assertEquals("0", alternative.geSlot().getId());
+        assertTrue(alternative.geSlot().getUsingAlternative());
+        // Freed slots are reused in the same order
+        mixed.checkOut(second, dateTime6h55min);
+        mixed.checkOut(first, dateTime6h55min);
+        assertEquals("1", mixed.checkIn(e50(), dateTime6h5min).geSlot().getId());
+        assertEquals("2", mixed.checkIn(e20(), dateTime6h5min).geSlot().getId());
+        assertFalse(mixed.checkIn(e20(), dateTime6h5min).isSuccessful());
+    }
+
+    @Test
+    public void testCheckOutUnknownCar() {
+        parking.checkIn(e20, dateTime6h5min);
+        parking.checkOut(e20, dateTime6h55min);
+        expectedEx.expect(ParkingException.class);
+        expectedEx.expectMessage("Car " + e20 + " not found !");
+        parking.checkOut(e20, dateTime6h55min);
+    }
+
+    @Test
+    public void testCheckInTwice() {
+        parking.checkIn(e20, dateTime6h5min);
+        expectedEx.expect(ParkingException.class);
+        expectedEx.expectMessage("Car " + e20 + " already checked in !");
+        parking.checkIn(e20, dateTime6h5min);
+    }
+
+    @Test
+    public void testCheckInAll() {
+        Parking<TestCar> sequential = Parking.<TestCar>builder().setPricingPolicy(FIVE_PER_HOUR_STARTED_ONE_FIXED)
+                .addSlots(isE20, 10)
+                .addSlots(isE50, 10)
+                .addSlots(isGAS, (isE20.or(isE50)).and(isChargeNotRequired), 40)
+                .build();
+        cars.addAll(e20List(5)); // -> no slot left for them
+        List<CheckInResult<TestCar>> results = parking.checkInAll(cars, dateTime6h5min);
+        assertEquals(cars.size(), results.size());
+        for (int i = 0; i < cars.size(); i++) {
+            CheckInResult<TestCar> expected = sequential.checkIn(cars.get(i), dateTime6h5min);
+            assertEquals(expected.isSuccessful(), results.get(i).isSuccessful());
+            if (expected.isSuccessful()) {
+                assertEquals(expected.geSlot().getId(), results.get(i).geSlot().getId());
+                assertSame(cars.get(i), results.get(i).geSlot().getCar());
+            }
+        }
+        assertEquals(25, parking.getAvailableSizeFor(gas));
+    }
+
+    @Test
+    public void testCheckInAllTwice() {
+        expectedEx.expect(ParkingException.class);
+        expectedEx.expectMessage("Car " + e20 + " already checked in !");
+        try {
+            parking.checkInAll(Arrays.asList(e50, e20, e20), dateTime6h5min);
+        } finally {
+            // Nothing was checked in
+            assertEquals(10, parking.getAvailableSizeFor(e50));
+        }
+    }
+
+    @Test
+    public void testCheckOutAll() {
+        parking.checkInAll(cars, dateTime6h5min);
+        List<CheckOutResult<TestCar>> results = parking.checkOutAll(cars, dateTime6h55min);
+        assertEquals(cars.size(), results.size());
+        for (int i = 0; i < cars.size(); i++) {
+            assertSame(cars.get(i), results.get(i).getSlot().getCar());
+            assertEquals(FIVE.add(ONE), results.get(i).getPrice());
+        }
+        assertEquals(40, parking.getAvailableSizeFor(gas));
+    }
+
+    @Test
+    public void testCheckOutAllNotFound() {
+        parking.checkInAll(cars, dateTime6h5min);
+        expectedEx.expect(ParkingException.class);
+        expectedEx.expectMessage("Car " + e20 + " not found !");
+        try {
+            parking.checkOutAll(Arrays.asList(cars.get(0), e20), dateTime6h55min);
+        } finally {
+            // Nothing was checked out
+            assertEquals(25, parking.getAvailableSizeFor(gas));
+            assertEquals(0, parking.getAvailableSizeFor(cars.get(0)));
+        }
+    }
+
+    @Test
+    public void testClassifyBy() {
+        AtomicInteger evaluations = new AtomicInteger();
+        Predicate<TestCar> countedE20 = c -> evaluations.incrementAndGet() > 0 && isE20.test(c);
+        Predicate<TestCar> countedGAS = c -> evaluations.incrementAndGet() > 0 && isGAS.test(c);
+        Predicate<TestCar> countedAlt = c -> evaluations.incrementAndGet() > 0 && isChargeNotRequired.test(c);
+        Parking<TestCar> classified = Parking.<TestCar>builder().setPricingPolicy(FIVE_PER_HOUR_STARTED_ONE_FIXED)
+                .classifyBy(c -> c.carType + "/" + c.isChargeNotRequired())
+                .addSlots(countedE20, 10)
+                .addSlots(countedGAS, countedAlt, 40)
+                .build();
+        // Policies are evaluated for the first car of each kind only
+        assertTrue(classified.checkIn(e20ChargeNotRequired()).isSuccessful());
+        int afterFirstCar = evaluations.get();
+        e20ChargeNotRequiredList(20).forEach(car -> assertTrue(classified.checkIn(car).isSuccessful()));
+        assertEquals(10, classified.getSizeFor(e20ChargeNotRequired()));
+        assertEquals(40, classified.getSizeAltFor(e20ChargeNotRequired()));
+        assertEquals(29, classified.getAvailableSizeCompatibleFor(e20ChargeNotRequired()));
+        assertEquals(afterFirstCar, evaluations.get());
+        // A new kind of car
+        assertTrue(classified.checkIn(gas).isSuccessful());
+        assertEquals(28, classified.getAvailableSizeFor(gas));
+        assertEquals(0, classified.getAvailableSizeFor(e20));
+        assertFalse(classified.checkIn(e20).isSuccessful());
+    }
+
+    @Test
+    public void testCheckInCheckOutWithHandle() {
+        SlotHandle<TestCar> handle = new SlotHandle<>();
+        e20List(10).forEach(parking::checkIn);
+        assertTrue(parking.checkIn(e20ChargeNotRequired, dateTime6h5min, handle));
+        assertEquals("20", handle.getId());
+        assertSame(e20ChargeNotRequired, handle.getCar());
+        assertEquals(dateTime6h5min, handle.getIncomingDateTime());
+        assertTrue(handle.isUsingAlternative());
+        assertNull(handle.getPrice());
+        assertEquals(FIVE.add(ONE), parking.checkOut(e20ChargeNotRequired, dateTime6h55min, handle));
+        assertEquals("20", handle.getId());
+        assertEquals(dateTime6h55min, handle.getOutgoingDateTime());
+        assertEquals(FIVE.add(ONE), handle.getPrice());
+        assertEquals(40, parking.getAvailableSizeFor(gas));
+        assertFalse(parking.checkIn(e20, dateTime6h5min, handle));
+        assertFalse(handle.isSuccessful());
+        assertNull(handle.getId());
+    }
+
+    @Test
+    public void testCheckInCheckOutWithHandleDoesNotAllocate() {
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+        Parking<TestCar> fixedPrice = Parking.<TestCar>builder().setPricingPolicy(PricingPolicy.FIXED(ONE))
+                .addSlots(isE20, 10)
+                .addSlots(isGAS, isChargeNotRequired, 40)
+                .build();
+        e20List(10).forEach(fixedPrice::checkIn);
+        SlotHandle<TestCar> handle = new SlotHandle<>();
+        long threadId = Thread.currentThread().getId();
+        int iterations = 100_000;
+        long allocated = 0;
+        // The first run warms up everything
+        for (int run = 0; run < 2; run++) {
+            allocated = threads.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < iterations; i++) {
+                fixedPrice.checkIn(e20ChargeNotRequired, dateTime6h5min, handle);
+                fixedPrice.checkOut(e20ChargeNotRequired, dateTime6h55min, handle);
+            }
+            allocated = threads.getThreadAllocatedBytes(threadId) - allocated;
+        }
+        assertEquals(ONE, handle.getPrice());
+        assertEquals(0, allocated / iterations);
+    }
+
     @Test
     public void testClassicCheckInCheckOut() {
         parking.checkIn(e20);
         assertEquals(e20, parking.checkOut(e20).getSlot().getCar());
     }
 
+    @Test
+    public void testDateTimeOutOfRange() {
+        for (Parking<TestCar> tested : Arrays.asList(parking, Parking.<TestCar>builder()
+                .setPricingPolicy(FIVE_PER_HOUR_STARTED_ONE_FIXED).addSlots(isE20, 1).setConcurrent(true).build())) {
+            long available = tested.getAvailableSizeFor(e20);
+            try {
+                tested.checkIn(e20, LocalDateTime.MAX);
+                fail();
+            } catch (IllegalArgumentException e) {
+                assertEquals(available, tested.getAvailableSizeFor(e20));
+            }
+            assertTrue(tested.checkIn(e20, Parking.MAX_DATE_TIME.minusHours(1)).isSuccessful());
+            try {
+                tested.checkOut(e20, LocalDateTime.MAX);
+                fail();
+            } catch (IllegalArgumentException e) {
+                // The car is still in
+            }
+            assertEquals(FIVE.add(ONE), tested.checkOut(e20, Parking.MAX_DATE_TIME).getPrice());
+        }
+    }
 }
@@ -0,0 +1,130 @@
+package io.github.jeallasia.tplapi;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ParkingZoneTest extends TestHelper {
+
+    @Test
+    public void defaultZone() {
+        Parking<TestCar> parking = Parking.<TestCar>builder().setPricingPolicy(FIVE_PER_HOUR_STARTED_ONE_FIXED)
+                .addSlots(isGAS, 2)
+                .build();
+        assertEquals(Collections.singletonList(Parking.DEFAULT_ZONE), parking.getZones());
+        assertEquals(0, parking.homeZoneOf(gas()));
+    }
+
+    @Test
+    public void homeZoneThenSpillOver() {
+        for (boolean concurrent : new boolean[]{false, true}) {
+            Parking<TestCar> parking = Parking.<TestCar>builder().setPricingPolicy(FIVE_PER_HOUR_STARTED_ONE_FIXED)
+                    .setConcurrent(concurrent)
+                    .setMetrics(true)
+                    .setZone("A").addSlots(isGAS, 2)
+                    .setZone("B").addSlots(isGAS, 2)
+                    .setZoneRouter(car -> "B")
+                    .build();
+            assertEquals(Arrays.asList("A", "B"), parking.getZones());
+            TestCar first = gas();
+            assertEquals("2", parking.checkIn(first, dateTime6h5min).geSlot().getId());
+            assertEquals("3", parking.checkIn(gas(), dateTime6h5min).geSlot().getId());
+            // Zone B is full
+            assertEquals("0", parking.checkIn(gas(), dateTime6h5min).geSlot().getId());
+            Map<String, Integer> occupancy = parking.getMetrics().getOccupancyByZone();
+            assertEquals(1, (int) occupancy.get("A"));
+            assertEquals(2, (int) occupancy.get("B"));
+            assertEquals(FIVE.add(ONE), parking.checkOut(first, dateTime6h55min).getPrice());
+            assertEquals(1, (int) parking.getMetrics().getOccupancyByZone().get("B"));
+            assertEquals("2", parking.checkIn(gas(), dateTime6h5min).geSlot().getId());
+            assertEquals(3, parking.getMetrics().getOccupancy().values().stream().mapToInt(Integer::intValue).sum());
+        }
+    }
+
+    @Test
+    public void zoneRouter() {
+        for (boolean concurrent : new boolean[]{false, true}) {
+            Parking<TestCar> parking = Parking.<TestCar>builder().setPricingPolicy(FIVE_PER_HOUR_STARTED_ONE_FIXED)
+                    .setConcurrent(concurrent)
+                    .setZone("A").addSlots(isGAS, 2)
+                    .setZone("B").addSlots(isGAS, 2)
+                    .setZone("C").addSlots(isGAS, 2)
+                    .setZoneRouter(car -> car.isChargeNotRequired() ? "C" : null)
+                    .build();
+            // Cars routed to C
+            assertEquals(2, parking.homeZoneOf(new TestCar(CarType.GASOLINE, true)));
+            assertEquals("4", parking.checkIn(new TestCar(CarType.GASOLINE, true), dateTime6h5min).geSlot().getId());
+            assertEquals("5", parking.checkIn(new TestCar(CarType.GASOLINE, true), dateTime6h5min).geSlot().getId());
+            // The other ones to the zone derived from the car, always the same for a car (C is full)
+            TestCar gas = gas();
+            int home = parking.homeZoneOf(gas);
+            assertEquals(home, parking.homeZoneOf(gas));
+            assertEquals(home == 2 ? "0" : String.valueOf(2 * home), parking.checkIn(gas, dateTime6h5min).geSlot().getId());
+        }
+    }
+
+    @Test
+    public void lowestTierBeforeHomeZone() {
+        for (boolean classified : new boolean[]{false, true}) {
+            ParkingBuilder<TestCar> builder = Parking.<TestCar>builder().setPricingPolicy(FIVE_PER_HOUR_STARTED_ONE_FIXED)
+                    .setZone("A").addSlots(isGAS, isE20, 1)
+                    .setZone("B").addSlots(isE20, 1)
+                    .setZoneRouter(car -> "A");
+            if (classified) builder.classifyBy(car -> car.carType);
+            Parking<TestCar> parking = builder.build();
+            // Home zone A, but the preferred slot is in B
+            CheckInResult<TestCar> result = parking.checkIn(e20(), dateTime6h5min);
+            assertEquals("1", result.geSlot().getId());
+            assertEquals(0, result.getTier());
+            result = parking.checkIn(e20(), dateTime6h5min);
+            assertEquals("0", result.geSlot().getId());
+            assertEquals(1, result.getTier());
+        }
+    }
+
+    @Test
+    public void concurrentZones() throws Exception {
+        int nbrZones = 4, nbrSlots = 250;
+        ParkingBuilder<TestCar> builder = Parking.<TestCar>builder().setPricingPolicy(FIVE_PER_HOUR_STARTED_ONE_FIXED)
+                .setConcurrent(true)
+                .setMetrics(true);
+        for (int zone = 0; zone < nbrZones; zone++) builder.setZone("Z" + zone).addSlots(isGAS, nbrSlots);
+        Parking<TestCar> parking = builder.build();
+        ExecutorService executor = Executors.newFixedThreadPool(nbrZones);
+        try {
+            List<Future<Set<String>>> futures = new ArrayList<>();
+            for (int t = 0; t < nbrZones; t++) {
+                futures.add(executor.submit(() -> {
+                    List<TestCar> cars = gasList(nbrSlots);
+                    for (TestCar car : cars) {
+                        parking.checkIn(car, dateTime6h5min);
+                        parking.checkOut(car, dateTime6h55min);
+                    }
+                    Set<String> slotIds = new HashSet<>();
+                    for (TestCar car : cars) slotIds.add(parking.checkIn(car, dateTime6h5min).geSlot().getId());
+                    return slotIds;
+                }));
+            }
+            Set<String> slotIds = new HashSet<>();
+            for (Future<Set<String>> future : futures) slotIds.addAll(future.get(30, TimeUnit.SECONDS));
+            assertEquals(nbrZones * nbrSlots, slotIds.size());
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(0, parking.getAvailableSize());
+        assertFalse(parking.checkIn(gas(), dateTime6h5min).isSuccessful());
+        for (int occupied : parking.getMetrics().getOccupancyByZone().values()) assertEquals(nbrSlots, occupied);
+    }
+}
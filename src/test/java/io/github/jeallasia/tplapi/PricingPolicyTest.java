@@ -1,12 +1,22 @@
 package io.github.jeallasia.tplapi;
 
+import org.javamoney.moneta.FastMoney;
+import org.javamoney.moneta.Money;
 import org.junit.Test;
 
 import javax.money.MonetaryAmount;
+import java.math.BigDecimal;
+import java.time.DayOfWeek;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.Random;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 public class PricingPolicyTest extends TestHelper {
     /**
@@ -105,6 +115,166 @@ public class PricingPolicyTest extends TestHelper {
                 PricingPolicy.computePerHour(duration, fiveEuros, false));
     }
 
+    @Test
+    public void computePerHourFromNanos() {
+        MonetaryAmount fiveEuros = euros(5);
+        long twoHours = Duration.ofHours(2).toNanos();
+        assertEquals(fiveEuros.multiply(2), PricingPolicy.computePerHour(twoHours, fiveEuros, true));
+        assertEquals(fiveEuros.multiply(3), PricingPolicy.computePerHour(twoHours + 1, fiveEuros, true));
+        assertEquals(fiveEuros.multiply(2), PricingPolicy.computePerHour(twoHours + 1, fiveEuros, false));
+        assertEquals(fiveEuros.multiply(0), PricingPolicy.computePerHour(0, fiveEuros, true));
+    }
+
+    @Test
+    public void compile() {
+        PricingPolicy<TestCar> policy = PricingPolicy.AND(
+                PricingPolicy.AND(PricingPolicy.PER_STARTED_HOUR(Money.of(2.5, "EUR")), PricingPolicy.FIXED(euros(1))),
+                PricingPolicy.AND(PricingPolicy.PER_FINISHED_HOUR(Money.of(0.125, "EUR")), PricingPolicy.FIXED(euros(5))));
+        PricingPolicy<TestCar> compiled = CompiledPricing.compile(policy);
+        assertTrue(compiled instanceof CompiledPricing);
+        LocalDateTime start = LocalDateTime.now();
+        for (int durationInMinutes = 0; durationInMinutes < 2_000; durationInMinutes += 7) {
+            ParkingSlot<TestCar> slot = new ParkingSlot<>("dummy", t -> true, e20(),
+                    start, false, start.plus(Duration.ofMinutes(durationInMinutes)));
+            MonetaryAmount expected = policy.computePrice(slot);
+            MonetaryAmount actual = compiled.computePrice(slot);
+            assertEquals(expected, actual);
+            assertEquals(expected.getClass(), actual.getClass());
+        }
+    }
+
+    @Test
+    public void compileKeepsTypeOfFirstAmount() {
+        PricingPolicy<TestCar> policy = PricingPolicy.PER_STARTED_HOUR_AND_FIXED(FastMoney.of(5, "EUR"), euros(1));
+        ParkingSlot<TestCar> slot = new ParkingSlot<>("dummy", t -> true, e20(),
+                dateTime6h5min, false, dateTime6h55min);
+        assertEquals(FastMoney.of(6, "EUR"), CompiledPricing.compile(policy).computePrice(slot));
+    }
+
+    @Test
+    public void compileNotPossible() {
+        PricingPolicy<TestCar> custom = slot -> euros(1);
+        assertSame(custom, CompiledPricing.compile(custom));
+        PricingPolicy<TestCar> withCustom = PricingPolicy.AND(PricingPolicy.FIXED(euros(1)), custom);
+        assertSame(withCustom, CompiledPricing.compile(withCustom));
+        PricingPolicy<TestCar> twoCurrencies = PricingPolicy.AND(PricingPolicy.FIXED(euros(1)),
+                PricingPolicy.FIXED(Money.of(1, "USD")));
+        assertSame(twoCurrencies, CompiledPricing.compile(twoCurrencies));
+    }
+
+    /**
+     * 5 euros per started hour, the first 15 minutes are free, 30 euros max per day
+     */
+    private static MonetaryAmount dailyCapped(Duration duration) {
+        if (duration.compareTo(Duration.ofMinutes(15)) <= 0) {
+            return euros(0);
+        }
+        long startedHours = (duration.toMinutes() + 59) / 60;
+        return euros((int) Math.min(30, startedHours * 5));
+    }
+
+    @Test
+    public void TABLE() {
+        PricingPolicy<TestCar> table = PricingPolicy.TABLE(Duration.ofMinutes(15), Duration.ofDays(1),
+                PricingPolicyTest::dailyCapped);
+        assertPriceEqual(0, table, 0);
+        assertPriceEqual(0, table, 15);
+        assertPriceEqual(5, table, 16);
+        assertPriceEqual(10, table, 61);
+        assertPriceEqual(30, table, 7 * 60);
+        assertPriceEqual(30, table, 24 * 60);
+        // Beyond the horizon: one day plus 1h05, rounded up to one day plus 1h15
+        assertPriceEqual(40, table, 25 * 60 + 5);
+        assertPriceEqual(60, table, 48 * 60);
+    }
+
+    @Test
+    public void TABLEReturnsCachedAmounts() {
+        PricingPolicy<TestCar> table = PricingPolicy.TABLE(Duration.ofMinutes(15), Duration.ofDays(1),
+                PricingPolicyTest::dailyCapped);
+        ParkingSlot<TestCar> slot = new ParkingSlot<>("dummy", t -> true, e20(),
+                dateTime6h5min, false, dateTime6h55min);
+        assertSame(table.computePrice(slot), table.computePrice(slot));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void TABLEHorizonNotMultipleOfBucket() {
+        PricingPolicy.TABLE(Duration.ofMinutes(7), Duration.ofHours(1), duration -> euros(0));
+    }
+
+    @Test
+    public void compileWithTable() {
+        PricingPolicy<TestCar> policy = PricingPolicy.AND(PricingPolicy.FIXED(Money.of(0.5, "EUR")),
+                PricingPolicy.TABLE(Duration.ofMinutes(15), Duration.ofDays(1), PricingPolicyTest::dailyCapped));
+        PricingPolicy<TestCar> compiled = CompiledPricing.compile(policy);
+        assertTrue(compiled instanceof CompiledPricing);
+        LocalDateTime start = LocalDateTime.now();
+        for (int durationInMinutes = 0; durationInMinutes < 5_000; durationInMinutes += 13) {
+            ParkingSlot<TestCar> slot = new ParkingSlot<>("dummy", t -> true, e20(),
+                    start, false, start.plus(Duration.ofMinutes(durationInMinutes)));
+            assertEquals(policy.computePrice(slot), compiled.computePrice(slot));
+        }
+    }
+
+    /**
+     * Check that the bulk prices are the same as the prices computed one by one
+     */
+    private static void assertBulkPrices(PricingPolicy<TestCar> policy, int nbrStays) {
+        Random random = new Random(42);
+        long[] in = new long[nbrStays];
+        long[] out = new long[nbrStays];
+        long[] expected = new long[nbrStays];
+        for (int i = 0; i < nbrStays; i++) {
+            LocalDateTime incoming = dateTime6h5min.plusMinutes(random.nextInt(100_000));
+            LocalDateTime outgoing = incoming.plusSeconds(random.nextInt(1_000_000));
+            in[i] = Timestamps.toEpochNanos(incoming);
+            out[i] = Timestamps.toEpochNanos(outgoing);
+            MonetaryAmount price = policy.computePrice(new ParkingSlot<>("dummy", t -> true, e20(), incoming, false, outgoing));
+            expected[i] = price.getNumber().numberValue(BigDecimal.class).movePointRight(2).longValueExact();
+        }
+        assertArrayEquals(expected, policy.computePrices(in, out, 2));
+        assertArrayEquals(expected, policy.computePricesParallel(in, out, 2));
+        assertArrayEquals(expected, CompiledPricing.compile(policy).computePrices(in, out, 2));
+    }
+
+    @Test
+    public void computePrices() {
+        assertBulkPrices(PricingPolicy.PER_STARTED_HOUR_AND_FIXED(Money.of(2.5, "EUR"), euros(1)), 1_000);
+        assertBulkPrices(PricingPolicy.AND(PricingPolicy.PER_FINISHED_HOUR(euros(3)),
+                PricingPolicy.TABLE(Duration.ofMinutes(15), Duration.ofDays(1), PricingPolicyTest::dailyCapped)), 1_000);
+        assertBulkPrices(PricingPolicy.<TestCar>WEEKLY(euros(2))
+                .setRate(LocalTime.of(22, 0), LocalTime.of(6, 0), euros(1))
+                .setRate(DayOfWeek.SUNDAY, Money.of(0.5, "EUR"))
+                .build(), 1_000);
+        // Not built-in policy
+        assertBulkPrices(slot -> euros((int) slot.computeDuration().toDays()), 1_000);
+    }
+
+    @Test
+    public void computePricesParallel() {
+        PricingPolicy<TestCar> policy = PricingPolicy.PER_STARTED_HOUR_AND_FIXED(euros(5), euros(1));
+        long[] in = new long[100_000];
+        long[] out = new long[in.length];
+        for (int i = 0; i < in.length; i++) {
+            out[i] = i * Timestamps.NANOS_PER_SECOND * 60;
+        }
+        long[] prices = policy.computePricesParallel(in, out, 0);
+        assertArrayEquals(policy.computePrices(in, out, 0), prices);
+        assertEquals(1, prices[0]);
+        assertEquals(5 * 1667 + 1, prices[prices.length - 1]);
+        assertEquals(0, Arrays.stream(prices).filter(price -> price <= 0).count());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void computePricesOutgoingBeforeIncoming() {
+        PricingPolicy.<TestCar>FIXED(euros(1)).computePrices(new long[]{1}, new long[]{0}, 2);
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void computePricesNotExact() {
+        PricingPolicy.<TestCar>FIXED(Money.of(0.5, "EUR")).computePrices(new long[]{0}, new long[]{0}, 0);
+    }
+
     @Test
     public void testCustom() {
         PricingPolicy<TestCar> freeForElectric = slot -> {
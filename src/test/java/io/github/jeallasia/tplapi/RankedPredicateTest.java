@@ -0,0 +1,101 @@
+package io.github.jeallasia.tplapi;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.function.Predicate;
+
+import static org.junit.Assert.*;
+
+public class RankedPredicateTest extends TestHelper {
+
+    private static final Predicate<TestCar> isElectric = isE50.or(isE20);
+    private static final Predicate<TestCar> none = c -> false;
+    private static final Predicate<TestCar> any = c -> true;
+    private static final RankedPredicate<TestCar> overflow = PredicateWithAlt.buildRanked(none, none, none, any);
+    private static final RankedPredicate<TestCar> regular = PredicateWithAlt.buildRanked(isGAS, none, isElectric);
+
+    /**
+     * Two overflow slots, one regular slot, one 20kW charger and one 50kW charger
+     */
+    private ParkingBuilder<TestCar> builder(boolean concurrent) {
+        return Parking.<TestCar>builder().setPricingPolicy(FIVE_PER_HOUR_STARTED_ONE_FIXED)
+                .setConcurrent(concurrent)
+                .addSlot("overflow", overflow)
+                .addSlot("regular", regular)
+                .addSlot("20kW", PredicateWithAlt.buildRanked(isE20, isE50))
+                .addSlot("50kW", PredicateWithAlt.buildRanked(isE50))
+                .addSlots(overflow, 1);
+    }
+
+    private void tiers(ParkingBuilder<TestCar> builder) {
+        Parking<TestCar> parking = builder.build();
+        CheckInResult<TestCar> result = parking.checkIn(e50(), dateTime6h5min);
+        assertEquals("50kW", result.geSlot().getId());
+        assertEquals(0, result.getTier());
+        assertFalse(result.geSlot().getUsingAlternative());
+        result = parking.checkIn(e50(), dateTime6h5min);
+        assertEquals("20kW", result.geSlot().getId());
+        assertEquals(1, result.getTier());
+        assertTrue(result.geSlot().getUsingAlternative());
+        SlotHandle<TestCar> handle = new SlotHandle<>();
+        assertTrue(parking.checkIn(e50(), dateTime6h5min, handle));
+        assertEquals("regular", handle.getId());
+        assertEquals(2, handle.getTier());
+        // The overflow slots are the last resort, the first one added is taken first
+        result = parking.checkIn(e50(), dateTime6h5min);
+        assertEquals("overflow", result.geSlot().getId());
+        result = parking.checkIn(e50(), dateTime6h5min);
+        assertEquals("0", result.geSlot().getId());
+        assertEquals(3, result.getTier());
+        result = parking.checkIn(e50(), dateTime6h5min);
+        assertFalse(result.isSuccessful());
+        assertEquals(PredicateWithAlt.NO_TIER, result.getTier());
+    }
+
+    @Test
+    public void tiers() {
+        tiers(builder(false));
+    }
+
+    @Test
+    public void tiersClassified() {
+        tiers(builder(false).classifyBy(car -> car.carType));
+    }
+
+    @Test
+    public void tiersConcurrent() {
+        tiers(builder(true).classifyBy(car -> car.carType));
+    }
+
+    @Test
+    public void predicateWithAlt() {
+        PredicateWithAlt<TestCar> policy = PredicateWithAlt.buildAlt(isE20, isElectric);
+        assertEquals(0, policy.tierOf(e20()));
+        assertEquals(1, policy.tierOf(e50()));
+        assertEquals(PredicateWithAlt.NO_TIER, policy.tierOf(gas()));
+        RankedPredicate<TestCar> ranked = PredicateWithAlt.buildRanked(isE20, isE50);
+        assertTrue(ranked.test(e20()));
+        assertTrue(ranked.testAlt(e50()));
+        assertFalse(ranked.testCompatible(gas()));
+    }
+
+    @Test
+    public void snapshotKeepsTiers() throws IOException {
+        TestCar e50 = e50();
+        CarCodec<TestCar> codec = CarCodec.ofKey(TestCar::toString, key -> e50);
+        Parking<TestCar> parking = Parking.<TestCar>builder().setPricingPolicy(FIVE_PER_HOUR_STARTED_ONE_FIXED)
+                .addSlot(regular)
+                .build();
+        parking.checkIn(e50, dateTime6h5min);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        parking.snapshot(out, codec);
+        Parking<TestCar> restored = Parking.<TestCar>builder().setPricingPolicy(FIVE_PER_HOUR_STARTED_ONE_FIXED)
+                .addSlot(regular)
+                .restore(new ByteArrayInputStream(out.toByteArray()), codec)
+                .build();
+        assertEquals(2, (int) restored.checkOut(e50, dateTime6h55min).getSlot().getTier());
+    }
+}
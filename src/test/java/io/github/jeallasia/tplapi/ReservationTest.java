@@ -0,0 +1,107 @@
+package io.github.jeallasia.tplapi;
+
+import io.github.jeallasia.tplapi.exception.ParkingException;
+import org.junit.Test;
+
+import java.time.Duration;
+
+import static org.junit.Assert.*;
+
+public class ReservationTest extends TestHelper {
+
+    private static final Duration HOLD = Duration.ofMinutes(30);
+
+    private Parking<TestCar> build(boolean concurrent) {
+        return Parking.<TestCar>builder().setPricingPolicy(FIVE_PER_HOUR_STARTED_ONE_FIXED)
+                .setConcurrent(concurrent)
+                .setMetrics(true)
+                .addSlots(isE50, 2)
+                .build();
+    }
+
+    private void reserveThenCheckIn(boolean concurrent) {
+        Parking<TestCar> parking = build(concurrent);
+        TestCar e50 = e50(), other = e50();
+        ReservationResult reservation = parking.reserve(e50, dateTime6h5min, HOLD);
+        assertTrue(reservation.isSuccessful());
+        assertEquals("0", reservation.getSlotId());
+        assertEquals(dateTime6h5min.plus(HOLD), reservation.getExpiryDateTime());
+        // Neither available nor occupied
+        assertEquals(1, parking.getAvailableSizeFor(e50));
+        assertEquals(1, parking.getMetrics().getReservedCount());
+        assertEquals(0, (int) parking.getMetrics().getOccupancy().values().iterator().next());
+        assertEquals(0, parking.getMetrics().getCheckInCount());
+        // Other cars get the other slot
+        assertEquals("1", parking.checkIn(other, dateTime6h5min).geSlot().getId());
+        assertFalse(parking.reserve(e50(), dateTime6h5min, HOLD).isSuccessful());
+        // The stay is priced from the check in
+        assertEquals("0", parking.checkIn(e50, dateTime6h5min.plusMinutes(20)).geSlot().getId());
+        assertEquals(0, parking.getMetrics().getReservedCount());
+        assertEquals(FIVE.add(ONE), parking.checkOut(e50, dateTime6h5min.plusMinutes(70)).getPrice());
+        assertEquals(1, parking.getAvailableSizeFor(e50));
+    }
+
+    @Test
+    public void reserveThenCheckIn() {
+        reserveThenCheckIn(false);
+    }
+
+    @Test
+    public void reserveThenCheckInConcurrent() {
+        reserveThenCheckIn(true);
+    }
+
+    private void expiry(boolean concurrent) {
+        Parking<TestCar> parking = build(concurrent);
+        TestCar late = e50(), cancelled = e50();
+        parking.reserve(late, dateTime6h5min, HOLD);
+        parking.reserve(cancelled, dateTime6h5min, HOLD.multipliedBy(4));
+        assertEquals(0, parking.getAvailableSizeFor(late));
+        assertTrue(parking.cancelReservation(cancelled));
+        assertFalse(parking.cancelReservation(cancelled));
+        assertEquals(1, parking.getAvailableSizeFor(late));
+        // Expired (and given back) when another car checks in after the expiry
+        TestCar other = e50();
+        assertEquals("0", parking.checkIn(other, dateTime6h5min.plus(HOLD)).geSlot().getId());
+        assertEquals(0, parking.getMetrics().getReservedCount());
+        assertEquals(1, parking.getAvailableSizeFor(late));
+        // The late car gets any free slot
+        assertEquals("1", parking.checkIn(late, dateTime6h55min).geSlot().getId());
+        // The cancelled reservation is skipped when it expires
+        parking.checkOut(other, dateTime6h55min);
+        parking.checkIn(e50(), dateTime6h5min.plus(HOLD.multipliedBy(4)));
+        assertEquals(0, parking.getAvailableSizeFor(late));
+        assertEquals(0, parking.getMetrics().getReservedCount());
+    }
+
+    @Test
+    public void expiry() {
+        expiry(false);
+    }
+
+    @Test
+    public void expiryConcurrent() {
+        expiry(true);
+    }
+
+    @Test(expected = ParkingException.class)
+    public void reserveTwice() {
+        Parking<TestCar> parking = build(false);
+        TestCar e50 = e50();
+        parking.reserve(e50, dateTime6h5min, HOLD);
+        parking.reserve(e50, dateTime6h5min, HOLD);
+    }
+
+    @Test(expected = ParkingException.class)
+    public void reserveCheckedIn() {
+        Parking<TestCar> parking = build(true);
+        TestCar e50 = e50();
+        parking.checkIn(e50, dateTime6h5min);
+        parking.reserve(e50, dateTime6h5min, HOLD);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void reserveNegativeDuration() {
+        build(false).reserve(e50(), dateTime6h5min, HOLD.negated());
+    }
+}
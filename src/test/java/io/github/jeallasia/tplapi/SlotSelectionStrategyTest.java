@@ -0,0 +1,98 @@
+package io.github.jeallasia.tplapi;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class SlotSelectionStrategyTest extends TestHelper {
+
+    private Parking<TestCar> build(SlotSelectionStrategy strategy, boolean concurrent) {
+        return Parking.<TestCar>builder().setPricingPolicy(FIVE_PER_HOUR_STARTED_ONE_FIXED)
+                .setSlotSelectionStrategy(strategy)
+                .setConcurrent(concurrent)
+                .addSlots(isE50, 2)
+                .addSlots(isGAS, isE50, 2)
+                .build();
+    }
+
+    private static String checkIn(Parking<TestCar> parking, TestCar car) {
+        return parking.checkIn(car, dateTime6h5min).geSlot().getId();
+    }
+
+    @Test
+    public void firstFree() {
+        Parking<TestCar> parking = build(SlotSelectionStrategy.FIRST_FREE(), false);
+        TestCar first = e50();
+        assertEquals("0", checkIn(parking, first));
+        assertEquals("1", checkIn(parking, e50()));
+        parking.checkOut(first, dateTime6h55min);
+        assertEquals("0", checkIn(parking, e50()));
+    }
+
+    private void leastRecentlyUsed(boolean concurrent) {
+        Parking<TestCar> parking = build(SlotSelectionStrategy.LEAST_RECENTLY_USED(), concurrent);
+        List<TestCar> cars = e50List(2);
+        assertEquals("0", checkIn(parking, cars.get(0)));
+        assertEquals("1", checkIn(parking, cars.get(1)));
+        parking.checkOut(cars.get(1), dateTime6h55min);
+        parking.checkOut(cars.get(0), dateTime6h55min);
+        // Slot 1 was released before slot 0
+        assertEquals("1", checkIn(parking, e50()));
+        assertEquals("0", checkIn(parking, e50()));
+        // Other pools are selected the same way
+        TestCar gas = gas();
+        assertEquals("2", checkIn(parking, gas));
+        parking.checkOut(gas, dateTime6h55min);
+        assertEquals("3", checkIn(parking, gas()));
+    }
+
+    @Test
+    public void leastRecentlyUsed() {
+        leastRecentlyUsed(false);
+    }
+
+    @Test
+    public void leastRecentlyUsedConcurrent() {
+        leastRecentlyUsed(true);
+    }
+
+    private void roundRobin(boolean concurrent) {
+        Parking<TestCar> parking = build(SlotSelectionStrategy.ROUND_ROBIN(), concurrent);
+        List<TestCar> cars = e50List(3);
+        assertEquals("0", checkIn(parking, cars.get(0)));
+        assertEquals("1", checkIn(parking, cars.get(1)));
+        parking.checkOut(cars.get(0), dateTime6h55min);
+        assertEquals("2", checkIn(parking, gas()));
+        assertEquals("0", checkIn(parking, cars.get(2)));
+        assertEquals("3", checkIn(parking, gas()));
+        parking.checkOut(cars.get(1), dateTime6h55min);
+        parking.checkOut(cars.get(2), dateTime6h55min);
+        // Slot 1 was allocated before slot 0
+        assertEquals(Arrays.asList("1", "0"), parking.checkInAll(e50List(2), dateTime6h55min).stream()
+                .map(result -> result.geSlot().getId()).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void roundRobin() {
+        roundRobin(false);
+    }
+
+    @Test
+    public void roundRobinConcurrent() {
+        roundRobin(true);
+    }
+
+    @Test
+    public void nearest() {
+        Parking<TestCar> parking = build(SlotSelectionStrategy.NEAREST(id -> id.equals("1") ? 0 : 10), false);
+        TestCar nearest = e50();
+        assertEquals("1", checkIn(parking, nearest));
+        assertEquals("0", checkIn(parking, e50()));
+        parking.checkOut(nearest, dateTime6h55min);
+        assertEquals("1", checkIn(parking, e50()));
+    }
+}
@@ -0,0 +1,95 @@
+package io.github.jeallasia.tplapi;
+
+import org.javamoney.moneta.Money;
+import org.junit.Test;
+
+import javax.money.MonetaryAmount;
+import java.math.BigDecimal;
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class WeeklyTariffTest extends TestHelper {
+
+    // 2019-06-03 is a monday
+    private static final LocalDateTime MONDAY = LocalDateTime.of(2019, 6, 3, 0, 0);
+
+    /**
+     * 2 per hour, 1 per hour at night (22:00 to 06:00), 0.5 per hour on sunday
+     */
+    private final PricingPolicy<TestCar> tariff = PricingPolicy.<TestCar>WEEKLY(euros(2))
+            .setRate(LocalTime.of(22, 0), LocalTime.of(6, 0), euros(1))
+            .setRate(DayOfWeek.SUNDAY, Money.of(0.5, "EUR"))
+            .build();
+
+    private MonetaryAmount price(LocalDateTime in, LocalDateTime out) {
+        return tariff.computePrice(new ParkingSlot<>("dummy", t -> true, e20(), in, false, out));
+    }
+
+    /**
+     * Price walking minute by minute
+     */
+    private static double naivePrice(LocalDateTime in, LocalDateTime out) {
+        double price = 0;
+        for (LocalDateTime t = in; t.isBefore(out); t = t.plusMinutes(1)) {
+            double perHour = 2;
+            int hour = t.getHour();
+            if (hour >= 22 || hour < 6) perHour = 1;
+            // Set after the nights, the sunday rate overrides them
+            if (t.getDayOfWeek() == DayOfWeek.SUNDAY) perHour = 0.5;
+            price += perHour / 60;
+        }
+        return price;
+    }
+
+    @Test
+    public void withinDay() {
+        assertEquals(euros(4), price(MONDAY.withHour(8), MONDAY.withHour(10)));
+        assertEquals(euros(0), price(MONDAY.withHour(8), MONDAY.withHour(8)));
+        assertEquals(Money.of(0.5, "EUR"), price(MONDAY.withHour(8), MONDAY.withHour(8).withMinute(15)));
+    }
+
+    @Test
+    public void acrossBoundaries() {
+        // 21:00 to 23:00 on monday: 1 hour at 2, 1 hour at 1
+        assertEquals(euros(3), price(MONDAY.withHour(21), MONDAY.withHour(23)));
+        // Saturday 20:00 to monday 08:00: 2h at 2, 2h at 1, 24h at 0.5, 6h at 1, 2h at 2
+        LocalDateTime saturday = MONDAY.plusDays(5);
+        assertEquals(Money.of(4 + 2 + 12 + 6 + 4, "EUR"), price(saturday.withHour(20), MONDAY.plusDays(7).withHour(8)));
+    }
+
+    @Test
+    public void fullWeeks() {
+        LocalDateTime in = MONDAY.withHour(10);
+        MonetaryAmount oneWeek = price(in, in.plusWeeks(1));
+        assertEquals(oneWeek.multiply(52), price(in, in.plusWeeks(52)));
+    }
+
+    @Test
+    public void sameAsNaive() {
+        Random random = new Random(42);
+        for (int i = 0; i < 50; i++) {
+            LocalDateTime in = MONDAY.plusMinutes(random.nextInt(14 * 24 * 60));
+            LocalDateTime out = in.plusMinutes(random.nextInt(10 * 24 * 60));
+            assertEquals(naivePrice(in, out), price(in, out).getNumber().doubleValue(), 0.006);
+        }
+    }
+
+    @Test
+    public void nineDecimals() {
+        // Costs used to be cumulated since 1969, overflowing for recent dates at this scale
+        PricingPolicy<TestCar> precise = PricingPolicy.<TestCar>WEEKLY(Money.of(new BigDecimal("10.000000001"), "EUR")).build();
+        LocalDateTime in = LocalDateTime.of(2026, 10, 17, 10, 0);
+        MonetaryAmount price = precise.computePrice(new ParkingSlot<>("dummy", t -> true, e20(), in, false, in.plusHours(2)));
+        assertTrue(price.isEqualTo(Money.of(new BigDecimal("20.000000002"), "EUR")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void twoCurrencies() {
+        PricingPolicy.<TestCar>WEEKLY(euros(2)).setRate(DayOfWeek.SUNDAY, Money.of(1, "USD")).build();
+    }
+}